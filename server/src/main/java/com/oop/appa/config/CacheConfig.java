@@ -1,21 +1,45 @@
 package com.oop.appa.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
 
+/**
+ * Bounded Caffeine caches with W-TinyLFU eviction. Each cache is built from the
+ * Caffeine spec in cache.specs.&lt;name&gt;, or cache.default-spec when it has none,
+ * and always records hit, miss and eviction statistics.
+ */
 @Configuration
 @EnableCaching
 public class CacheConfig {
-    @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager(
-            "oneYearData", 
-            "portfolioVolatility", 
+    private static final String[] CACHE_NAMES = {
+            "oneYearData",
+            "portfolioVolatility",
             "annualizedVolatility",
             "AnnualizedportfolioVolatility",
-            "portfolioUser");
+            "portfolioUser" };
+
+    @Bean
+    public CacheManager cacheManager(Environment environment,
+            @Value("${cache.default-spec:maximumSize=1000,expireAfterWrite=15m}") String defaultSpec) {
+        List<Cache> caches = new ArrayList<>();
+        for (String name : CACHE_NAMES) {
+            String spec = environment.getProperty("cache.specs." + name, defaultSpec);
+            caches.add(new CaffeineCache(name, Caffeine.from(spec).recordStats().build()));
+        }
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        return cacheManager;
     }
 }
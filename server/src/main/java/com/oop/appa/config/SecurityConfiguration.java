@@ -1,5 +1,6 @@
 package com.oop.appa.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -26,7 +27,8 @@ public class SecurityConfiguration {
             "/swagger-ui/**",
             "/swagger-ui.html",
             "/users/sendOTP",
-            "/users/verifyOTP"
+            "/users/verifyOTP",
+            "/actuator/health/**"
     };
 
     @Bean
@@ -36,6 +38,10 @@ public class SecurityConfiguration {
                 .disable()
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests()
+                // Asynchronous endpoints finish on an async dispatch of a request that
+                // was already authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                .permitAll()
                 .requestMatchers(AUTH_WHITELIST)
                 .permitAll()
                 .anyRequest()
@@ -1,14 +1,76 @@
 package com.oop.appa.config;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * The HTTP client shared by every upstream market data call. Connections are
+ * pooled and kept alive, HTTP/2 is negotiated over TLS where the server supports
+ * it, and responses are requested gzip compressed.
+ */
 @Configuration
 public class WebClientConfig {
 
+    @Value("${marketdata.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${marketdata.http.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${marketdata.http.pending-acquire-timeout:10s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${marketdata.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${marketdata.http.read-timeout:30s}")
+    private Duration readTimeout;
+
+    @Value("${marketdata.http.max-in-memory-size:32MB}")
+    private DataSize maxInMemorySize;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider marketDataConnectionProvider() {
+        return ConnectionProvider.builder("market-data")
+                .maxConnections(maxConnections)
+                .maxIdleTime(maxIdleTime)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .evictInBackground(maxIdleTime)
+                .build();
+    }
+
     @Bean
-    public WebClient webClient() {
-        return WebClient.create();
+    public WebClient webClient(ConnectionProvider marketDataConnectionProvider) {
+        return createWebClient(marketDataConnectionProvider, connectTimeout, readTimeout, maxInMemorySize);
+    }
+
+    /**
+     * Builds a client on the given connection pool. The read timeout bounds the gap
+     * between reads of a response, so long streamed downloads are not cut off.
+     * Buffered responses larger than the in-memory limit fail instead of filling
+     * the heap.
+     */
+    public static WebClient createWebClient(ConnectionProvider connectionProvider, Duration connectTimeout,
+            Duration readTimeout, DataSize maxInMemorySize) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                .compress(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize((int) maxInMemorySize.toBytes()))
+                .build();
     }
 }
@@ -0,0 +1,59 @@
+package com.oop.appa.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.oop.appa.exception.ErrorResponse;
+
+import io.swagger.v3.oas.annotations.Operation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+@RestController
+@RequestMapping("/caches")
+public class CacheController {
+    private CacheManager cacheManager;
+
+    @Autowired
+    public CacheController(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Operation(summary = "Get hit, miss and eviction statistics and the size of each cache")
+    @GetMapping("/stats")
+    public ResponseEntity<?> getCacheStatistics() {
+        try {
+            Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+            for (String name : new TreeSet<>(cacheManager.getCacheNames())) {
+                Cache cache = cacheManager.getCache(name);
+                if (!(cache instanceof CaffeineCache)) {
+                    continue;
+                }
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = ((CaffeineCache) cache)
+                        .getNativeCache();
+                CacheStats stats = nativeCache.stats();
+                Map<String, Object> cacheStatistics = new LinkedHashMap<>();
+                cacheStatistics.put("size", nativeCache.estimatedSize());
+                cacheStatistics.put("hits", stats.hitCount());
+                cacheStatistics.put("misses", stats.missCount());
+                cacheStatistics.put("hitRate", stats.hitRate());
+                cacheStatistics.put("evictions", stats.evictionCount());
+                statistics.put(name, cacheStatistics);
+            }
+            return ResponseEntity.ok(statistics);
+        } catch (Exception e) {
+            ErrorResponse error = new ErrorResponse();
+            error.setMessage("Error fetching cache statistics");
+            error.setDetails(e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.oop.appa.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Strong ETags and Cache-Control for the read endpoints the client refetches on
+ * every route change. An ETag is derived from the version of the data a response
+ * is built from, so a client whose If-None-Match still matches gets a 304 without
+ * the response being built.
+ */
+final class ConditionalGet {
+    // Every endpoint needs the user's token, so only the browser may store responses
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+    static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
+    private ConditionalGet() {
+    }
+
+    static String etag(Object... versions) {
+        StringBuilder version = new StringBuilder();
+        for (Object part : versions) {
+            version.append(part).append('|');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(version.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // checkNotModified already set the ETag, the 304 repeats Cache-Control so the
+    // client keeps revalidating the same way
+    static ResponseEntity<?> notModified(CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+    }
+}
@@ -0,0 +1,38 @@
+package com.oop.appa.controller;
+
+import com.oop.appa.exception.ErrorResponse;
+import com.oop.appa.service.MarketDataService;
+
+import io.swagger.v3.oas.annotations.Operation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/marketData")
+public class MarketDataController {
+    private MarketDataService marketDataService;
+
+    @Autowired
+    public MarketDataController(MarketDataService marketDataService) {
+        this.marketDataService = marketDataService;
+    }
+
+    @Operation(summary = "Get upstream market data request statistics, including calls saved by coalescing")
+    @GetMapping("/stats")
+    public ResponseEntity<?> getRequestStatistics() {
+        try {
+            Map<String, Long> statistics = marketDataService.getRequestStatistics();
+            return ResponseEntity.ok(statistics);
+        } catch (Exception e) {
+            ErrorResponse error = new ErrorResponse();
+            error.setMessage("Error fetching market data statistics");
+            error.setDetails(e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+}
@@ -6,15 +6,18 @@ import com.oop.appa.dto.PortfolioStockRebalancingDTO;
 import com.oop.appa.dto.RebalancingTargetPercentagesDTO;
 import com.oop.appa.entity.PortfolioStock;
 import com.oop.appa.exception.ErrorResponse;
+import com.oop.appa.exception.ErrorResponses;
 import com.oop.appa.service.PortfolioStockService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import reactor.core.publisher.Mono;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import java.util.List;
 import java.util.Map;
 
@@ -39,7 +42,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error fetching all portfolio stocks");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -54,7 +57,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error fetching all portfolio stocks by portfolio id");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -72,7 +75,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error fetching portfolio stock by stock symbol");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -89,7 +92,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error creating a new portfolio stock");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -108,7 +111,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error fetching rebalancing options");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -123,7 +126,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error executing rebalancing");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -141,7 +144,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error selling portfolio stock by stock symbol");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -158,7 +161,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error deleting portfolio stock by id");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -177,7 +180,7 @@ public class PortfolioStockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error deleting portfolio stock by portfolio id and stock symbol");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -186,68 +189,63 @@ public class PortfolioStockController {
     @Parameter(name = "portfolioId", description = "portfolio id")
     @Parameter(name = "stockSymbol", description = "stock symbol")
     @GetMapping("/{portfolioId}/stocks/{stockSymbol}/weight")
-    public ResponseEntity<?> getStockWeight(@PathVariable Integer portfolioId,
+    public Mono<ResponseEntity<?>> getStockWeight(@PathVariable Integer portfolioId,
             @PathVariable String stockSymbol) {
-        try {
-            Map<String,Double> stockWeight = portfolioStockService.calculateStockWeight(portfolioId, stockSymbol);
-            return ResponseEntity.ok(stockWeight);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error calculating stock weight");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.internalServerError().body(error);
-        }
+        return portfolioStockService.calculateStockWeightAsync(portfolioId, stockSymbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error calculating stock weight");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Calculate weighted return of a stock in a portfolio by portfolio id and stock symbol")
     @Parameter(name = "portfolioId", description = "portfolio id")
     @Parameter(name = "stockSymbol", description = "stock symbol")
     @GetMapping("/{portfolioId}/stocks/{stockSymbol}/calculateWeightedReturn")
-    public ResponseEntity<?> calculateWeightedStockReturn(@PathVariable Integer portfolioId,
+    public Mono<ResponseEntity<?>> calculateWeightedStockReturn(@PathVariable Integer portfolioId,
             @PathVariable String stockSymbol) {
-        try {
-            Map<String, Double> weightedReturn = portfolioStockService.calculateWeightedStockReturn(portfolioId, stockSymbol);
-            return ResponseEntity.ok(weightedReturn);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error calculating weighted return");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.internalServerError().body(error);
-        }
+        return portfolioStockService.calculateWeightedStockReturnAsync(portfolioId, stockSymbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error calculating weighted return");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Annualised return of a stock in a portfolio by portfolio id and stock symbol")
     @Parameter(name = "portfolioStockId", description = "portfolio stock id")
     @GetMapping("/{portfolioId}/stocks/{stockSymbol}/calculateAnnualisedReturn")
-    public ResponseEntity<?> calculateAnnualisedReturn(@PathVariable Integer portfolioId,
+    public Mono<ResponseEntity<?>> calculateAnnualisedReturn(@PathVariable Integer portfolioId,
             @PathVariable String stockSymbol) {
-        try {
-            Map<String,Double> annualisedReturn = portfolioStockService.calculateAnnualisedReturn(portfolioId, stockSymbol);
-            return ResponseEntity.ok(annualisedReturn);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error calculating annualised return");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.internalServerError().body(error);
-        }
+        return portfolioStockService.calculateAnnualisedReturnAsync(portfolioId, stockSymbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error calculating annualised return");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Groups the portfolio stocks into a sector and returns a map of the Stock, its actual value and percentage of the portfolio")
     @Parameter(name = "portfolioId", description = "portfolio id")
     @Parameter(name = "groupBy", description = "group by 'sector', 'industry' or 'exchange' or 'country'")
     @GetMapping("/{portfolioId}/stocks")
-    public ResponseEntity<?> getPortfolioStocksByGroup(@PathVariable Integer portfolioId,
+    public Mono<ResponseEntity<?>> getPortfolioStocksByGroup(@PathVariable Integer portfolioId,
             @RequestParam String groupBy) {
-        try {
-            PortfolioGroupingSummary portfolioStocksBySector = portfolioStockService
-                    .calculateTotalPortfolioValueByGroup(portfolioId, groupBy);
-            return ResponseEntity.ok(portfolioStocksBySector);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error getting portfolio stocks by sector");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.internalServerError().body(error);
-        }
+        return portfolioStockService.calculateTotalPortfolioValueByGroupAsync(portfolioId, groupBy)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error getting portfolio stocks by sector");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Get the monthly volatility of a portfolio")
@@ -259,7 +257,7 @@ public class PortfolioStockController {
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(null);
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().body(null);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, null);
         }
     }
 
@@ -272,19 +270,24 @@ public class PortfolioStockController {
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(null);
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().body(null);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, null);
         }
     }
 
     @Operation(summary = "Get the summary of a portfolio")
     @Parameter(name = "portfolioId", description = "portfolio id")
     @GetMapping("/{portfolioId}/summary")
-    public ResponseEntity<?> getPortfolioSummary(@PathVariable Integer portfolioId) {
+    public ResponseEntity<?> getPortfolioSummary(@PathVariable Integer portfolioId, WebRequest webRequest) {
         try {
+            String etag = ConditionalGet.etag("summary", portfolioId,
+                    portfolioStockService.getPortfolioSummaryVersion(portfolioId));
+            if (webRequest.checkNotModified(etag)) {
+                return ConditionalGet.notModified(ConditionalGet.REVALIDATE);
+            }
             Map<String, Object> response = portfolioStockService.getPortfolioSummary(portfolioId);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().eTag(etag).cacheControl(ConditionalGet.REVALIDATE).body(response);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error retrieving portfolio summary");
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, "Error retrieving portfolio summary");
         }
     }
 
@@ -4,21 +4,31 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.oop.appa.entity.Stock;
 import com.oop.appa.entity.StockLookup;
 import com.oop.appa.exception.ErrorResponse;
+import com.oop.appa.exception.ErrorResponses;
 import com.oop.appa.service.MarketDataService;
+import com.oop.appa.service.PriceSeries;
+import com.oop.appa.service.ReturnHorizon;
 import com.oop.appa.service.StockService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import reactor.core.publisher.Mono;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
+
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -43,14 +53,24 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error fetching all stocks");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
     @Operation(summary = "Retrieve all stock lookups")
     @GetMapping("/stocklookup")
-    public List<StockLookup> findAllStockLookups() {
-        return stockService.findAllStockLookups();
+    public ResponseEntity<?> findAllStockLookups(WebRequest webRequest) {
+        List<StockLookup> stockLookups = stockService.findAllStockLookups();
+        // Reference data without a version column, so its content is its version
+        Object[] versions = new Object[stockLookups.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = stockLookups.get(i).getStockSymbol() + "=" + stockLookups.get(i).getName();
+        }
+        String etag = ConditionalGet.etag(versions);
+        if (webRequest.checkNotModified(etag)) {
+            return ConditionalGet.notModified(ConditionalGet.REVALIDATE);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(ConditionalGet.REVALIDATE).body(stockLookups);
     }
 
     @Operation(summary = "Retrieve all stocks with pagination")
@@ -64,7 +84,7 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error fetching all stocks with pagination");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -79,7 +99,7 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error creating stock");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -94,7 +114,7 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error adding stock by stock symbol.");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -110,7 +130,7 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error updating stock");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -126,82 +146,120 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error deleting stock");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
     @Operation(summary = "Calculate One Year Return of a stock based on monthly data")
     @Parameter(name = "symbol", description = "stock symbol")
     @GetMapping("/calculateOneYearReturn")
-    public ResponseEntity<?> calculateOneYearReturn(@RequestParam String symbol) {
-        try {
-            double oneYearReturn = stockService.calculateOneYearReturn(symbol);
-            return ResponseEntity.ok(oneYearReturn);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error in calculating one year return");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+    public Mono<ResponseEntity<?>> calculateOneYearReturn(@RequestParam String symbol) {
+        return stockService.calculateOneYearReturnAsync(symbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error in calculating one year return");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Calculate One Month Return of a stock based on daily data")
     @Parameter(name = "symbol", description = "stock symbol")
     @GetMapping("/calculateOneMonthReturn")
-    public ResponseEntity<?> calculateOneMonthReturn(@RequestParam String symbol) {
-        try {
-            double oneMonthReturn = stockService.calculateOneMonthReturn(symbol);
-            return ResponseEntity.ok(oneMonthReturn);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error in calculating one month return");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+    public Mono<ResponseEntity<?>> calculateOneMonthReturn(@RequestParam String symbol) {
+        return stockService.calculateOneMonthReturnAsync(symbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error in calculating one month return");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Calculate One Week Return of a stock based on daily data")
     @Parameter(name = "symbol", description = "stock symbol")
     @GetMapping("/calculateOneWeekReturn")
-    public ResponseEntity<?> calculateOneWeekReturn(@RequestParam String symbol) {
-        try {
-            double oneWeekReturn = stockService.calculateOneWeekReturn(symbol);
-            return ResponseEntity.ok(oneWeekReturn);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error in calculating one week return");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+    public Mono<ResponseEntity<?>> calculateOneWeekReturn(@RequestParam String symbol) {
+        return stockService.calculateOneWeekReturnAsync(symbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error in calculating one week return");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Calculate One Day Return of a stock based on current data")
     @Parameter(name = "symbol", description = "stock symbol")
     @GetMapping("/calculateOneDayReturn")
-    public ResponseEntity<?> calculateOneDayReturn(@RequestParam String symbol) {
-        try {
-            double oneDayReturn = stockService.calculateYesterdayReturn(symbol);
-            return ResponseEntity.ok(oneDayReturn);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error in calculating one day return");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+    public Mono<ResponseEntity<?>> calculateOneDayReturn(@RequestParam String symbol) {
+        return stockService.calculateYesterdayReturnAsync(symbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error in calculating one day return");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
+    }
+
+    @Operation(summary = "Calculate a stock's returns over several horizons", description = "Every horizon is calculated from one quote and one read of the daily history. A horizon is null when the history does not go back far enough.")
+    @Parameter(name = "symbol", description = "stock symbol")
+    @Parameter(name = "horizons", description = "comma separated '1D', '1W', '1M', '3M', 'YTD', '1Y', all of them when left out")
+    @GetMapping("/{symbol}/returns")
+    public Mono<ResponseEntity<?>> calculateReturns(@PathVariable String symbol,
+            @RequestParam(required = false) List<String> horizons) {
+        return Mono.fromCallable(() -> ReturnHorizon.fromLabels(horizons))
+                .flatMap(returnHorizons -> stockService.calculateReturnsAsync(symbol, returnHorizons))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> returnsError(e));
+    }
+
+    @Operation(summary = "Calculate the returns of several stocks over several horizons")
+    @Parameter(name = "symbols", description = "comma separated stock symbols")
+    @Parameter(name = "horizons", description = "comma separated '1D', '1W', '1M', '3M', 'YTD', '1Y', all of them when left out")
+    @GetMapping("/returns")
+    public Mono<ResponseEntity<?>> calculateReturnsOfStocks(@RequestParam List<String> symbols,
+            @RequestParam(required = false) List<String> horizons) {
+        return Mono.fromCallable(() -> ReturnHorizon.fromLabels(horizons))
+                .flatMap(returnHorizons -> stockService.calculateReturnsAsync(symbols, returnHorizons))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> returnsError(e));
+    }
+
+    private static Mono<ResponseEntity<?>> returnsError(Throwable e) {
+        ErrorResponse error = new ErrorResponse();
+        error.setMessage("Error in calculating returns");
+        error.setDetails(e.getMessage());
+        HttpStatus status = e instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST
+                : HttpStatus.INTERNAL_SERVER_ERROR;
+        return Mono.just(ErrorResponses.of(e, status, error));
     }
 
     @Operation(summary = "Get one year's worth of data for a stock on monthly data")
     @Parameter(name = "symbol", description = "stock symbol")
     @GetMapping("/oneYearData")
-    public ResponseEntity<?> fetchOneYearData(@RequestParam String symbol) {
+    public ResponseEntity<?> fetchOneYearData(@RequestParam String symbol, WebRequest webRequest) {
         try {
-            List<Map<String, Object>> data = stockService.fetchOneYearData(symbol);
-            return ResponseEntity.ok(data);
+            // The series is cached, so its own last bar is the version of the response
+            PriceSeries series = stockService.fetchOneYearData(symbol);
+            String etag = series.isEmpty() ? ConditionalGet.etag("oneYearData", symbol)
+                    : ConditionalGet.etag("oneYearData", symbol, series.size(), series.epochDay(0),
+                            series.epochDay(series.size() - 1),
+                            Double.doubleToLongBits(series.close(series.size() - 1)));
+            if (webRequest.checkNotModified(etag)) {
+                return ConditionalGet.notModified(ConditionalGet.REVALIDATE);
+            }
+            List<Map<String, Object>> data = toDataPoints(series);
+            return ResponseEntity.ok().eTag(etag).cacheControl(ConditionalGet.REVALIDATE).body(data);
         } catch (Exception e) {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in getting one year's worth of data using monthly data");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -210,13 +268,13 @@ public class StockController {
     @GetMapping("/oneQuarterData")
     public ResponseEntity<?> fetchOneQuarterData(@RequestParam String symbol) {
         try {
-            List<Map<String, Object>> data = stockService.fetchOneQuarterData(symbol);
+            List<Map<String, Object>> data = toDataPoints(stockService.fetchOneQuarterData(symbol));
             return ResponseEntity.ok(data);
         } catch (Exception e) {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in getting one quarter's worth of data using daily data");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -225,13 +283,13 @@ public class StockController {
     @GetMapping("/oneMonthData")
     public ResponseEntity<?> fetchOneMonthData(@RequestParam String symbol) {
         try {
-            List<Map<String, Object>> data = stockService.fetchOneMonthData(symbol);
+            List<Map<String, Object>> data = toDataPoints(stockService.fetchOneMonthData(symbol));
             return ResponseEntity.ok(data);
         } catch (Exception e) {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in getting one month's worth of data using daily data");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -240,13 +298,13 @@ public class StockController {
     @GetMapping("/oneWeekData")
     public ResponseEntity<?> fetchOneWeekData(@RequestParam String symbol) {
         try {
-            List<Map<String, Object>> data = stockService.fetchOneWeekData(symbol);
+            List<Map<String, Object>> data = toDataPoints(stockService.fetchOneWeekData(symbol));
             return ResponseEntity.ok(data);
         } catch (Exception e) {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in calculating one week's worth of data using daily data");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -261,7 +319,7 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in calculating monthly volatility");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
@@ -276,40 +334,40 @@ public class StockController {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in calculating annualized volatility");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
 
     @Operation(summary = "Get a stock's overview data")
     @Parameter(name = "symbol", description = "stock symbol")
     @GetMapping("/overviewData")
-    public ResponseEntity<?> fetchOverviewData(@RequestParam String symbol) {
-        try {
-            JsonNode data = marketDataService.fetchOverviewData(symbol);
-            return ResponseEntity.ok(data);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error in fetching overview data");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+    public Mono<ResponseEntity<?>> fetchOverviewData(@RequestParam String symbol) {
+        return marketDataService.fetchOverviewDataAsync(symbol)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error in fetching overview data");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Search bar end point")
     @Parameter(name = "searchTerm", description = "search term")
     @GetMapping("/search")
-    public ResponseEntity<?> searchBar(@RequestParam String searchTerm) {
-        try {
-            List<Map<String, String>> data = stockService.searchBar(searchTerm);
-            Map<String, List<Map<String, String>>> response = new HashMap<>();
-            response.put("data", data);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            ErrorResponse error = new ErrorResponse();
-            error.setMessage("Error in fetching search ticker data");
-            error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
-        }
+    public Mono<ResponseEntity<?>> searchBar(@RequestParam String searchTerm) {
+        return stockService.searchBarAsync(searchTerm)
+                .<ResponseEntity<?>>map(data -> {
+                    Map<String, List<Map<String, String>>> response = new HashMap<>();
+                    response.put("data", data);
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(e -> {
+                    ErrorResponse error = new ErrorResponse();
+                    error.setMessage("Error in fetching search ticker data");
+                    error.setDetails(e.getMessage());
+                    return Mono.just(ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error));
+                });
     }
 
     @Operation(summary = "Get a stock's price at a specific date")
@@ -319,28 +377,70 @@ public class StockController {
     public ResponseEntity<?> fetchPriceAtDate(@RequestParam String symbol, @RequestParam String date) {
         try {
             Map<String,Object> price = stockService.fetchStockPriceAtDate(symbol, date);
-            return ResponseEntity.ok(price);
+            return ResponseEntity.ok().cacheControl(historicalCacheControl(List.of(symbol), List.of(date))).body(price);
         } catch (Exception e) {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in fetching price at date");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
         }
     }
     
+    @Operation(summary = "Get the prices of several stocks at several dates", description = "Each date is answered with the close of that day, or of the closest trading day before it, from the local price history.")
+    @Parameter(name = "symbols", description = "comma separated stock symbols")
+    @Parameter(name = "dates", description = "comma separated dates in yyyy-mm-dd format")
+    @GetMapping("/pricesAtDates")
+    public ResponseEntity<?> fetchPricesAtDates(@RequestParam List<String> symbols, @RequestParam List<String> dates) {
+        try {
+            Map<String, Map<String, Map<String, Object>>> prices = stockService.fetchStockPricesAtDates(symbols, dates);
+            return ResponseEntity.ok().cacheControl(historicalCacheControl(symbols, dates)).body(prices);
+        } catch (Exception e) {
+            ErrorResponse error = new ErrorResponse();
+            error.setMessage("Error in fetching prices at dates");
+            error.setDetails(e.getMessage());
+            HttpStatus status = e instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST
+                    : HttpStatus.INTERNAL_SERVER_ERROR;
+            return ErrorResponses.of(e, status, error);
+        }
+    }
+
     @Operation(summary = "Get daily stock price for a period")
     @Parameter(name = "symbol", description = "stock symbol")
     @Parameter(name = "period", description = "'week', 'month', 'quarter', 'year'")
     @GetMapping("/dailyPriceTimePeriod")
-    public ResponseEntity<?> fetchDailyPriceTimePeriod(@RequestParam String symbol, @RequestParam String period) {
+    public ResponseEntity<?> fetchDailyPriceTimePeriod(@RequestParam String symbol, @RequestParam String period,
+            WebRequest webRequest) {
         try {
+            // The period is counted back from today, so the window moves with the date too
+            String etag = ConditionalGet.etag("dailyPriceTimePeriod", symbol, period.toLowerCase(Locale.ROOT),
+                    LocalDate.now(), stockService.getDailySeriesVersion(symbol));
+            if (webRequest.checkNotModified(etag)) {
+                return ConditionalGet.notModified(ConditionalGet.REVALIDATE);
+            }
             Map<String,Double> price = stockService.fetchStockPricesUpToPeriod(symbol, period);
-            return ResponseEntity.ok(price);
+            return ResponseEntity.ok().eTag(etag).cacheControl(ConditionalGet.REVALIDATE).body(price);
         } catch (Exception e) {
             ErrorResponse error = new ErrorResponse();
             error.setMessage("Error in fetching daily price for a period");
             error.setDetails(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ErrorResponses.of(e, HttpStatus.INTERNAL_SERVER_ERROR, error);
+        }
+    }
+
+    // Closes that can no longer change may be kept by the browser for good
+    private CacheControl historicalCacheControl(List<String> symbols, List<String> dates) {
+        return stockService.isPriceAtDateFinal(symbols, dates) ? ConditionalGet.IMMUTABLE : ConditionalGet.REVALIDATE;
+    }
+
+    // Newest first with the close as a string, matching the Alpha Vantage time series
+    private static List<Map<String, Object>> toDataPoints(PriceSeries series) {
+        List<Map<String, Object>> dataPoints = new ArrayList<>(series.size());
+        for (int i = series.size() - 1; i >= 0; i--) {
+            Map<String, Object> dataPoint = new HashMap<>();
+            dataPoint.put("date", series.date(i).toString());
+            dataPoint.put("4. close", String.format(Locale.ROOT, "%.4f", series.close(i)));
+            dataPoints.add(dataPoint);
         }
+        return dataPoints;
     }
 }
@@ -7,6 +7,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.oop.appa.entity.PortfolioStock;
 
@@ -18,4 +19,8 @@ public interface PortfolioStockRepository extends JpaRepository<PortfolioStock,
     @EntityGraph(attributePaths = {"stock"})
     Optional<PortfolioStock> findByPortfolioPortfolioIdAndStockStockSymbol(Integer portfolioId, String stockSymbol);
     void deleteById(Integer portfolioStockId);
+
+    // Distinct held symbols, the ones held by the most positions first
+    @Query("SELECT ps.stock.stockSymbol FROM PortfolioStock ps GROUP BY ps.stock.stockSymbol ORDER BY COUNT(ps) DESC")
+    List<String> findHeldSymbolsByHoldings();
 }
@@ -0,0 +1,22 @@
+package com.oop.appa.event;
+
+/**
+ * A portfolio itself was updated or deleted.
+ */
+public class PortfolioChangedEvent {
+    private final Integer portfolioId;
+    private final boolean deleted;
+
+    public PortfolioChangedEvent(Integer portfolioId, boolean deleted) {
+        this.portfolioId = portfolioId;
+        this.deleted = deleted;
+    }
+
+    public Integer getPortfolioId() {
+        return portfolioId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,22 @@
+package com.oop.appa.event;
+
+/**
+ * A holding of a portfolio was bought, sold, repriced or dropped.
+ */
+public class PositionChangedEvent {
+    private final Integer portfolioId;
+    private final String stockSymbol;
+
+    public PositionChangedEvent(Integer portfolioId, String stockSymbol) {
+        this.portfolioId = portfolioId;
+        this.stockSymbol = stockSymbol;
+    }
+
+    public Integer getPortfolioId() {
+        return portfolioId;
+    }
+
+    public String getStockSymbol() {
+        return stockSymbol;
+    }
+}
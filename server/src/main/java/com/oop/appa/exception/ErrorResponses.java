@@ -0,0 +1,27 @@
+package com.oop.appa.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+public final class ErrorResponses {
+    private ErrorResponses() {
+    }
+
+    /**
+     * Answers an error with the given status, unless it was caused by a refused
+     * upstream call: that is answered with 429 or 503 and a Retry-After header, so
+     * the client backs off instead of treating it as a server fault.
+     */
+    public static <T> ResponseEntity<T> of(Throwable error, HttpStatus otherwise, T body) {
+        UpstreamException upstream = UpstreamException.findCause(error);
+        if (upstream == null) {
+            return ResponseEntity.status(otherwise).body(body);
+        }
+        // Retry-After is given in whole seconds, rounded up
+        long seconds = Math.max(1, (upstream.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(upstream.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .body(body);
+    }
+}
@@ -12,6 +12,6 @@ public class GlobalExceptionHandler {
     public ResponseEntity<ErrorResponse> handleAllExceptions(Exception ex) {
         ErrorResponse error = new ErrorResponse();
         error.setMessage(ex.getMessage());
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        return ErrorResponses.of(ex, HttpStatus.INTERNAL_SERVER_ERROR, error);
     }
 }
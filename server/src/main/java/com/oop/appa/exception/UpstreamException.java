@@ -0,0 +1,35 @@
+package com.oop.appa.exception;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * A market data call that was refused before it reached the upstream. It carries
+ * how long the client should wait before retrying, so it can be answered with a
+ * status and a Retry-After header instead of a server error.
+ */
+public abstract class UpstreamException extends RuntimeException {
+    private final Duration retryAfter;
+
+    protected UpstreamException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public abstract HttpStatus getStatus();
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    // Services wrap their failures, so the refusal may be any cause of the error
+    public static UpstreamException findCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UpstreamException) {
+                return (UpstreamException) cause;
+            }
+        }
+        return null;
+    }
+}
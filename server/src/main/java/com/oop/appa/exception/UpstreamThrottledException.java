@@ -0,0 +1,16 @@
+package com.oop.appa.exception;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpStatus;
+
+public class UpstreamThrottledException extends UpstreamException {
+    public UpstreamThrottledException(String message, Duration retryAfter) {
+        super(message, retryAfter);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.TOO_MANY_REQUESTS;
+    }
+}
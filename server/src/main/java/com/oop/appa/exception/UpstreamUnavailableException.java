@@ -0,0 +1,16 @@
+package com.oop.appa.exception;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpStatus;
+
+public class UpstreamUnavailableException extends UpstreamException {
+    public UpstreamUnavailableException(String message, Duration retryAfter) {
+        super(message, retryAfter);
+    }
+
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.SERVICE_UNAVAILABLE;
+    }
+}
@@ -0,0 +1,62 @@
+package com.oop.appa.service;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import reactor.core.publisher.Flux;
+
+/**
+ * Fetches market data from the Alpha Vantage REST API, using the
+ * ALPHAVANTAGE_API_KEY from the environment or the .env file.
+ */
+@Component
+@ConditionalOnProperty(name = "marketdata.provider", havingValue = "alphavantage", matchIfMissing = true)
+public class AlphaVantageMarketDataProvider implements MarketDataProvider {
+    private static final String ALPHA_VANTAGE_BASE_URL = "https://www.alphavantage.co";
+
+    private final WebClient webClient;
+    private final String apiKey;
+
+    @Autowired
+    public AlphaVantageMarketDataProvider(WebClient webClient) {
+        this.webClient = webClient;
+        this.apiKey = Dotenv.load().get("ALPHAVANTAGE_API_KEY");
+    }
+
+    @Override
+    public CompletableFuture<byte[]> fetch(MarketDataRequest request) {
+        return webClient.get()
+                .uri(toUri(request))
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .toFuture();
+    }
+
+    @Override
+    public Flux<DataBuffer> stream(MarketDataRequest request) {
+        return webClient.get()
+                .uri(toUri(request))
+                .retrieve()
+                .bodyToFlux(DataBuffer.class);
+    }
+
+    private URI toUri(MarketDataRequest request) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(ALPHA_VANTAGE_BASE_URL)
+                .path("/query")
+                .queryParam("function", request.getFunction());
+        for (Map.Entry<String, String> parameter : request.getParameters().entrySet()) {
+            uri.queryParam(parameter.getKey(), parameter.getValue());
+        }
+        uri.queryParam("apikey", apiKey);
+        return uri.encode().build().toUri();
+    }
+}
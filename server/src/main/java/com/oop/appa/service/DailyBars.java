@@ -0,0 +1,105 @@
+package com.oop.appa.service;
+
+import java.util.Arrays;
+
+/**
+ * Daily OHLCV bars held in parallel primitive arrays, oldest day first. Used to
+ * move freshly downloaded bars into the {@link PriceHistoryStore}.
+ */
+public class DailyBars {
+    private int[] epochDays;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private long[] volume;
+    private int size;
+
+    public DailyBars(int capacity) {
+        int initialCapacity = Math.max(capacity, 1);
+        epochDays = new int[initialCapacity];
+        open = new double[initialCapacity];
+        high = new double[initialCapacity];
+        low = new double[initialCapacity];
+        close = new double[initialCapacity];
+        volume = new long[initialCapacity];
+    }
+
+    public void add(int epochDay, double openPrice, double highPrice, double lowPrice, double closePrice,
+            long tradedVolume) {
+        if (size == epochDays.length) {
+            int newCapacity = size * 2;
+            epochDays = Arrays.copyOf(epochDays, newCapacity);
+            open = Arrays.copyOf(open, newCapacity);
+            high = Arrays.copyOf(high, newCapacity);
+            low = Arrays.copyOf(low, newCapacity);
+            close = Arrays.copyOf(close, newCapacity);
+            volume = Arrays.copyOf(volume, newCapacity);
+        }
+        epochDays[size] = epochDay;
+        open[size] = openPrice;
+        high[size] = highPrice;
+        low[size] = lowPrice;
+        close[size] = closePrice;
+        volume[size] = tradedVolume;
+        size++;
+    }
+
+    /**
+     * Reverses the order of the bars in place.
+     */
+    public void reverse() {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            swap(i, j);
+        }
+    }
+
+    private void swap(int i, int j) {
+        int epochDay = epochDays[i];
+        epochDays[i] = epochDays[j];
+        epochDays[j] = epochDay;
+        double value = open[i];
+        open[i] = open[j];
+        open[j] = value;
+        value = high[i];
+        high[i] = high[j];
+        high[j] = value;
+        value = low[i];
+        low[i] = low[j];
+        low[j] = value;
+        value = close[i];
+        close[i] = close[j];
+        close[j] = value;
+        long tradedVolume = volume[i];
+        volume[i] = volume[j];
+        volume[j] = tradedVolume;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int epochDay(int index) {
+        return epochDays[index];
+    }
+
+    public double open(int index) {
+        return open[index];
+    }
+
+    public double high(int index) {
+        return high[index];
+    }
+
+    public double low(int index) {
+        return low[index];
+    }
+
+    public double close(int index) {
+        return close[index];
+    }
+
+    public long volume(int index) {
+        return volume[index];
+    }
+}
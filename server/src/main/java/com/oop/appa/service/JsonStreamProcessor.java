@@ -2,46 +2,119 @@ package com.oop.appa.service;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonToken;
 
 import java.io.InputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.LocalDate;
 
+/**
+ * Reads a TIME_SERIES_DAILY response token by token into {@link DailyBars}
+ * without building a JSON tree. Dates are decoded straight to epoch days and
+ * prices to primitive doubles.
+ */
 public class JsonStreamProcessor {
-    private Map<String, Double> stockPrices = new HashMap<>();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String TIME_SERIES_FIELD = "Time Series (Daily)";
 
-    public Map<String, Double> getStockPrices() {
-        return stockPrices;
-    }
-
-    public Map<String, Double> processJsonStream(InputStream inputStream) throws IOException {
-        JsonFactory jsonFactory = new JsonFactory();
-        ObjectMapper objectMapper = new ObjectMapper(jsonFactory);
-        Map<String, Double> stockPrices = new HashMap<>();
+    /**
+     * Returns the bars on or after the given start date, oldest first. A null
+     * start date reads the whole series.
+     */
+    public DailyBars processJsonStream(InputStream inputStream, LocalDate startDate) throws IOException {
+        long startDay = startDate == null ? Long.MIN_VALUE : startDate.toEpochDay();
+        DailyBars bars = new DailyBars(128);
 
-        try (JsonParser jsonParser = jsonFactory.createParser(inputStream)) {
-            while (jsonParser.nextToken() != null) {
-                JsonNode node = objectMapper.readTree(jsonParser);
-                processNode(node, stockPrices); // Pass the map to the processNode method
+        try (JsonParser jsonParser = JSON_FACTORY.createParser(inputStream)) {
+            if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected daily data response");
+            }
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                if (TIME_SERIES_FIELD.equals(fieldName)) {
+                    readTimeSeries(jsonParser, startDay, bars);
+                    break;
+                }
+                if (jsonParser.currentToken() == JsonToken.VALUE_STRING) {
+                    // Rate limit notes and invalid symbols come back as a single message field
+                    if ("Information".equals(fieldName) || "Note".equals(fieldName)
+                            || "Error Message".equals(fieldName)) {
+                        throw new IOException(jsonParser.getText());
+                    }
+                }
+                jsonParser.skipChildren();
             }
         }
-        return stockPrices; // Return the populated map
+        bars.reverse();
+        return bars;
     }
 
-    private void processNode(JsonNode node, Map<String, Double> stockPrices) {
-        if (node.has("Time Series (Daily)")) {
-            JsonNode dailyData = node.get("Time Series (Daily)");
-            dailyData.fields().forEachRemaining(entry -> {
-                String date = entry.getKey();
-                JsonNode dayData = entry.getValue();
-                if (dayData.has("4. close")) {
-                    double closingPrice = dayData.get("4. close").asDouble();
-                    stockPrices.put(date, closingPrice);
+    // Alpha Vantage lists the newest day first, so reading stops at the first day
+    // before the start date
+    private void readTimeSeries(JsonParser jsonParser, long startDay, DailyBars bars) throws IOException {
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            int epochDay = toEpochDay(jsonParser.getTextCharacters(), jsonParser.getTextOffset(),
+                    jsonParser.getTextLength());
+            if (epochDay < startDay) {
+                return;
+            }
+            double open = 0;
+            double high = 0;
+            double low = 0;
+            double close = Double.NaN;
+            long volume = 0;
+            jsonParser.nextToken();
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = jsonParser.getCurrentName();
+                jsonParser.nextToken();
+                switch (fieldName) {
+                    case "1. open":
+                        open = jsonParser.getValueAsDouble();
+                        break;
+                    case "2. high":
+                        high = jsonParser.getValueAsDouble();
+                        break;
+                    case "3. low":
+                        low = jsonParser.getValueAsDouble();
+                        break;
+                    case "4. close":
+                        close = jsonParser.getValueAsDouble(Double.NaN);
+                        break;
+                    case "5. volume":
+                        volume = jsonParser.getValueAsLong();
+                        break;
+                    default:
+                        jsonParser.skipChildren();
                 }
-            });
+            }
+            // A day without a usable close is skipped rather than stored as a zero price
+            if (close > 0) {
+                bars.add(epochDay, open, high, low, close, volume);
+            }
+        }
+    }
+
+    // Dates are always yyyy-MM-dd
+    private static int toEpochDay(char[] text, int offset, int length) throws IOException {
+        if (length != 10 || text[offset + 4] != '-' || text[offset + 7] != '-') {
+            throw new IOException("Unexpected date: " + new String(text, offset, length));
+        }
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    private static int digits(char[] text, int offset, int count) throws IOException {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Unexpected date: " + new String(text, offset, count));
+            }
+            value = value * 10 + digit;
         }
+        return value;
     }
 }
@@ -0,0 +1,116 @@
+package com.oop.appa.service;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+
+/**
+ * Read-only view over a symbol's daily bars, oldest day first. The columns are
+ * buffers over the memory-mapped column files of the {@link PriceHistoryStore}, so
+ * lookups and slices read the page cache directly without copying the series.
+ */
+public class MappedPriceSeries {
+    public static final MappedPriceSeries EMPTY = new MappedPriceSeries(IntBuffer.allocate(0),
+            DoubleBuffer.allocate(0), DoubleBuffer.allocate(0), DoubleBuffer.allocate(0), DoubleBuffer.allocate(0),
+            LongBuffer.allocate(0));
+
+    private final IntBuffer epochDays;
+    private final DoubleBuffer open;
+    private final DoubleBuffer high;
+    private final DoubleBuffer low;
+    private final DoubleBuffer close;
+    private final LongBuffer volume;
+
+    MappedPriceSeries(IntBuffer epochDays, DoubleBuffer open, DoubleBuffer high, DoubleBuffer low,
+            DoubleBuffer close, LongBuffer volume) {
+        this.epochDays = epochDays;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+    }
+
+    public int size() {
+        return epochDays.limit();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int epochDay(int index) {
+        return epochDays.get(index);
+    }
+
+    public LocalDate date(int index) {
+        return LocalDate.ofEpochDay(epochDays.get(index));
+    }
+
+    public double open(int index) {
+        return open.get(index);
+    }
+
+    public double high(int index) {
+        return high.get(index);
+    }
+
+    public double low(int index) {
+        return low.get(index);
+    }
+
+    public double close(int index) {
+        return close.get(index);
+    }
+
+    public long volume(int index) {
+        return volume.get(index);
+    }
+
+    /**
+     * Index of the last bar on or before the given date, or -1 if there is none.
+     */
+    public int floorIndex(LocalDate date) {
+        return insertionPoint(date.toEpochDay() + 1) - 1;
+    }
+
+    /**
+     * Index of the first bar on or after the given date, or {@link #size()} if
+     * there is none.
+     */
+    public int ceilingIndex(LocalDate date) {
+        return insertionPoint(date.toEpochDay());
+    }
+
+    /**
+     * Bars between the two dates, both inclusive, sharing this view's buffers.
+     */
+    public MappedPriceSeries slice(LocalDate from, LocalDate to) {
+        int start = ceilingIndex(from);
+        int end = Math.max(start, floorIndex(to) + 1);
+        return slice(start, end);
+    }
+
+    public MappedPriceSeries slice(int start, int end) {
+        int length = end - start;
+        return new MappedPriceSeries(epochDays.slice(start, length), open.slice(start, length),
+                high.slice(start, length), low.slice(start, length), close.slice(start, length),
+                volume.slice(start, length));
+    }
+
+    // First index whose epoch day is not below the given day
+    private int insertionPoint(long epochDay) {
+        int lowIndex = 0;
+        int highIndex = size();
+        while (lowIndex < highIndex) {
+            int middle = (lowIndex + highIndex) >>> 1;
+            if (epochDays.get(middle) < epochDay) {
+                lowIndex = middle + 1;
+            } else {
+                highIndex = middle;
+            }
+        }
+        return lowIndex;
+    }
+}
@@ -0,0 +1,415 @@
+package com.oop.appa.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Second cache tier under the in-memory ones: good upstream responses persisted to
+ * local disk, so a restarted node answers from disk instead of spending the
+ * upstream budget again.
+ *
+ * Responses are appended to segment files as records of a header (magic, key
+ * length, body length, time stored), the key, the body and a CRC32 of all of it.
+ * On startup the segments are scanned and an index of the latest record per key is
+ * kept in memory; a record that fails its checksum ends the scan of its segment.
+ * Writes go through a single background thread. Once more than half of the stored
+ * bytes belong to replaced records, or the live records outgrow the maximum size,
+ * the live records are copied into a fresh segment, newest first and dropping the
+ * oldest beyond the size bound, and the old segments are deleted.
+ */
+@Component
+public class MarketDataDiskCache {
+    private static final int MAGIC = 0x4D444331;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+    private static final int CHECKSUM_BYTES = 4;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private volatile boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final Environment environment;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<Long, FileChannel> segments = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Duration>> timesToLive = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "market-data-disk-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched by the writer thread, after the index is loaded
+    private long activeSegment;
+    private long activeSize;
+    private long storedBytes;
+    private long liveBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong corruptRecords = new AtomicLong();
+
+    public MarketDataDiskCache(@Value("${marketdata.disk-cache.enabled:true}") boolean enabled,
+            @Value("${marketdata.disk-cache.directory:data/market-data-cache}") String directory,
+            @Value("${marketdata.disk-cache.segment-size:16MB}") DataSize segmentSize,
+            @Value("${marketdata.disk-cache.max-size:256MB}") DataSize maxSize,
+            Environment environment) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentSize.toBytes();
+        this.maxBytes = maxSize.toBytes();
+        this.environment = environment;
+        if (enabled) {
+            try {
+                load();
+            } catch (IOException e) {
+                // Run without the disk tier rather than fail to start
+                index.clear();
+                this.enabled = false;
+            }
+        }
+    }
+
+    public static class Entry {
+        private final byte[] body;
+        private final Instant storedAt;
+
+        Entry(byte[] body, Instant storedAt) {
+            this.body = body;
+            this.storedAt = storedAt;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public Instant getStoredAt() {
+            return storedAt;
+        }
+    }
+
+    /**
+     * When the response for the key was stored, without reading it from disk, or
+     * null if there is none.
+     */
+    public Instant getStoredAt(String key) {
+        Location location = index.get(key);
+        return location == null ? null : Instant.ofEpochMilli(location.storedAtMillis);
+    }
+
+    /**
+     * How long responses of a function are served from disk without asking the
+     * upstream, from marketdata.disk-cache.ttl.&lt;FUNCTION&gt;. Functions without one
+     * are only kept for the stale fallback.
+     */
+    public Optional<Duration> getTimeToLive(String function) {
+        return timesToLive.computeIfAbsent(function, name -> Optional
+                .ofNullable(environment.getProperty("marketdata.disk-cache.ttl." + name))
+                .map(DurationStyle::detectAndParse));
+    }
+
+    /**
+     * Reads the latest response stored for the key. This reads from disk, so it
+     * should not run on an event loop thread.
+     */
+    public Entry get(String key) {
+        Entry entry = read(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    public void put(String key, byte[] body, Instant storedAt) {
+        if (!enabled) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                Location replaced = append(key, body, storedAt.toEpochMilli());
+                if (replaced != null) {
+                    liveBytes -= replaced.length;
+                }
+                writes.incrementAndGet();
+                if ((segments.size() > 1 && liveBytes * 2 < storedBytes) || liveBytes > maxBytes) {
+                    compact();
+                }
+            } catch (IOException e) {
+                // The response is still cached in memory, only the restart copy is lost
+            }
+        });
+    }
+
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new HashMap<>();
+        statistics.put("diskCacheEntries", (long) index.size());
+        statistics.put("diskCacheHits", hits.get());
+        statistics.put("diskCacheMisses", misses.get());
+        statistics.put("diskCacheWrites", writes.get());
+        statistics.put("diskCacheCorruptRecords", corruptRecords.get());
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (FileChannel channel : segments.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Closing on shutdown, nothing left to do
+            }
+        }
+    }
+
+    private Entry read(String key) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            FileChannel channel = segments.get(location.segment);
+            try {
+                if (channel == null) {
+                    throw new ClosedChannelException();
+                }
+                ByteBuffer record = ByteBuffer.allocate(location.length);
+                while (record.hasRemaining() && channel.read(record, location.offset + record.position()) >= 0) {
+                }
+                record.flip();
+                Entry entry = decode(record, key);
+                if (entry == null) {
+                    corruptRecords.incrementAndGet();
+                    index.remove(key, location);
+                }
+                return entry;
+            } catch (IOException e) {
+                // The segment was compacted away while reading, the index already
+                // points at the copy
+            }
+        }
+        return null;
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        files.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), path);
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            });
+        }
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            FileChannel channel = FileChannel.open(file.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.put(file.getKey(), channel);
+            long validSize = scan(file.getKey(), channel);
+            if (file.getKey().equals(files.lastKey())) {
+                // Drop a torn write at the end so appends continue after the last good record
+                channel.truncate(validSize);
+                activeSegment = file.getKey();
+                activeSize = validSize;
+            }
+            storedBytes += validSize;
+        }
+        for (Location location : index.values()) {
+            liveBytes += location.length;
+        }
+        if (files.isEmpty()) {
+            openSegment(0);
+        }
+    }
+
+    private long scan(long segment, FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+        }
+        buffer.flip();
+        long offset = 0;
+        while (offset + HEADER_BYTES + CHECKSUM_BYTES <= size) {
+            buffer.position((int) offset);
+            int magic = buffer.getInt();
+            int keyLength = buffer.getInt();
+            int bodyLength = buffer.getInt();
+            long storedAtMillis = buffer.getLong();
+            long length = (long) HEADER_BYTES + keyLength + bodyLength + CHECKSUM_BYTES;
+            if (magic != MAGIC || keyLength < 0 || bodyLength < 0 || offset + length > size) {
+                break;
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.position((int) offset).limit((int) (offset + length));
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            if (!checksumMatches(record.slice())) {
+                corruptRecords.incrementAndGet();
+                break;
+            }
+            index.put(new String(keyBytes, StandardCharsets.UTF_8),
+                    new Location(segment, offset, (int) length, storedAtMillis));
+            offset += length;
+        }
+        return offset;
+    }
+
+    // Returns the record the new one replaces, whose bytes are no longer live unless
+    // compaction is moving it
+    private Location append(String key, byte[] body, long storedAtMillis) throws IOException {
+        ByteBuffer record = encode(key, body, storedAtMillis);
+        int length = record.remaining();
+        if (activeSize > 0 && activeSize + length > segmentBytes) {
+            openSegment(activeSegment + 1);
+        }
+        FileChannel channel = segments.get(activeSegment);
+        long offset = activeSize;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        activeSize += length;
+        storedBytes += length;
+        liveBytes += length;
+        return index.put(key, new Location(activeSegment, offset, length, storedAtMillis));
+    }
+
+    // Copies the live records into new segments and deletes the old ones. Once the
+    // live records outgrow the maximum size, the oldest are dropped until they fit in
+    // three quarters of it, so the next eviction is some writes away.
+    private void compact() throws IOException {
+        List<Long> oldSegments = new ArrayList<>(segments.keySet());
+        List<Map.Entry<String, Location>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Location> entry) -> entry.getValue().storedAtMillis)
+                .reversed());
+        long budget = liveBytes > maxBytes ? maxBytes / 4 * 3 : Long.MAX_VALUE;
+        openSegment(activeSegment + 1);
+        storedBytes = 0;
+        liveBytes = 0;
+        for (Map.Entry<String, Location> entry : entries) {
+            if (liveBytes + entry.getValue().length > budget) {
+                index.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            Entry stored = read(entry.getKey());
+            if (stored != null) {
+                append(entry.getKey(), stored.body, stored.storedAt.toEpochMilli());
+            }
+        }
+        for (Long segment : oldSegments) {
+            FileChannel channel = segments.remove(segment);
+            channel.close();
+            Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segments.put(segment, channel);
+        activeSegment = segment;
+        activeSize = 0;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%016d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static ByteBuffer encode(String key, byte[] body, long storedAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + keyBytes.length + body.length + CHECKSUM_BYTES);
+        record.putInt(MAGIC).putInt(keyBytes.length).putInt(body.length).putLong(storedAtMillis);
+        record.put(keyBytes).put(body);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    // Null when the record is damaged or belongs to another key
+    private static Entry decode(ByteBuffer record, String key) {
+        if (record.remaining() < HEADER_BYTES + CHECKSUM_BYTES || !checksumMatches(record.duplicate())) {
+            return null;
+        }
+        int magic = record.getInt();
+        int keyLength = record.getInt();
+        int bodyLength = record.getInt();
+        long storedAtMillis = record.getLong();
+        if (magic != MAGIC) {
+            return null;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        record.get(keyBytes);
+        if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+            return null;
+        }
+        byte[] body = new byte[bodyLength];
+        record.get(body);
+        return new Entry(body, Instant.ofEpochMilli(storedAtMillis));
+    }
+
+    private static boolean checksumMatches(ByteBuffer record) {
+        int checksumAt = record.limit() - CHECKSUM_BYTES;
+        ByteBuffer content = record.duplicate();
+        content.position(0).limit(checksumAt);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return (int) crc.getValue() == record.getInt(checksumAt);
+    }
+
+    private static class Location {
+        private final long segment;
+        private final long offset;
+        private final int length;
+        private final long storedAtMillis;
+
+        Location(long segment, long offset, int length, long storedAtMillis) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.storedAtMillis = storedAtMillis;
+        }
+    }
+}
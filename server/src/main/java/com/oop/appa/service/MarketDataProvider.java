@@ -0,0 +1,31 @@
+package com.oop.appa.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Source of raw market data responses. {@link MarketDataServiceImpl} rate limits,
+ * coalesces and parses the responses, so a provider only has to return the
+ * Alpha Vantage JSON body for a request. The provider is selected with the
+ * marketdata.provider property.
+ */
+public interface MarketDataProvider {
+
+    public CompletableFuture<byte[]> fetch(MarketDataRequest request);
+
+    /**
+     * Streams the response body as it arrives. Cancelling the subscription stops
+     * the download. Providers without a streaming transport emit the buffered body.
+     */
+    public default Flux<DataBuffer> stream(MarketDataRequest request) {
+        return Mono.fromFuture(() -> fetch(request))
+                .<DataBuffer>map(DefaultDataBufferFactory.sharedInstance::wrap)
+                .flux();
+    }
+
+}
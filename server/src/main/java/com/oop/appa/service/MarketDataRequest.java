@@ -0,0 +1,51 @@
+package com.oop.appa.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An Alpha Vantage style market data query: a function such as GLOBAL_QUOTE and
+ * its parameters in the order they were added.
+ */
+public class MarketDataRequest {
+    private final String function;
+    private final Map<String, String> parameters = new LinkedHashMap<>();
+
+    private MarketDataRequest(String function) {
+        this.function = function;
+    }
+
+    public static MarketDataRequest of(String function) {
+        return new MarketDataRequest(function);
+    }
+
+    public MarketDataRequest with(String name, String value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public String getFunction() {
+        return function;
+    }
+
+    public Map<String, String> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    public String getParameter(String name) {
+        return parameters.get(name);
+    }
+
+    // Identical requests share this key, e.g. TIME_SERIES_DAILY:AAPL:compact
+    public String key() {
+        StringBuilder key = new StringBuilder(function);
+        parameters.values().forEach(value -> key.append(':').append(value));
+        return key.toString();
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
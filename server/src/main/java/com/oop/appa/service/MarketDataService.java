@@ -1,9 +1,13 @@
 package com.oop.appa.service;
 
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Map;
 import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import reactor.core.publisher.Mono;
+
 @Service
 public interface MarketDataService {
 
@@ -13,6 +17,8 @@ public interface MarketDataService {
 
     public JsonNode fetchCurrentData(String symbol);
 
+    public Map<String, Double> fetchCurrentPrices(Collection<String> symbols);
+
     public JsonNode fetchIntraday(String symbol, String month);
 
     public JsonNode fetchOverviewData(String symbol);
@@ -21,6 +27,28 @@ public interface MarketDataService {
 
     public JsonNode fetchSearchTicker(String searchTerm);
 
-    public InputStream fetchDailyDataStream(String stockSymbol, String outputSize);
+    // Non-blocking variants, the request thread is released while the upstream call is in flight
+    public Mono<JsonNode> fetchMonthDataAsync(String symbol);
+
+    public Mono<JsonNode> fetchDailyDataAsync(String symbol, String outputSize);
+
+    public Mono<JsonNode> fetchCurrentDataAsync(String symbol);
+
+    public Mono<Map<String, Double>> fetchCurrentPricesAsync(Collection<String> symbols);
+
+    public Mono<JsonNode> fetchIntradayAsync(String symbol, String month);
+
+    public Mono<JsonNode> fetchOverviewDataAsync(String symbol);
+
+    public Mono<JsonNode> fetchThreeMonthTreasuryYieldAsync();
+
+    public Mono<JsonNode> fetchSearchTickerAsync(String searchTerm);
+
+    public InputStream fetchDailyDataStream(String stockSymbol, String outputSize, UpstreamPriority priority);
+
+    // Refreshes a cached quote at background priority, returns whether an upstream call was started
+    public boolean refreshCurrentData(String symbol);
+
+    public Map<String, Long> getRequestStatistics();
 
 }
@@ -1,195 +1,525 @@
 package com.oop.appa.service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import io.github.cdimascio.dotenv.Dotenv;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import io.jsonwebtoken.io.IOException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.oop.appa.exception.UpstreamUnavailableException;
 
 @Service
 public class MarketDataServiceImpl implements MarketDataService {
-    private final WebClient webClient;
-    private static final Dotenv dotenv = Dotenv.load();
-    private static final String ALPHA_VANTAGE_BASE_URL = "https://www.alphavantage.co";
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    // Rate limit notices are a single short message field
+    private static final int MAX_NOTICE_BYTES = 1024;
+    // Full daily histories are served from the local price history store instead
+    private static final int MAX_FALLBACK_BYTES = 1024 * 1024;
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+
+    private final MarketDataProvider marketDataProvider;
+    private final ObjectMapper objectMapper;
+    private final RequestCoalescer requestCoalescer;
+    private final QuoteCache quoteCache;
+    private final UpstreamRateLimiter rateLimiter;
+    private final UpstreamCircuitBreaker circuitBreaker;
+    private final MarketDataDiskCache diskCache;
+    private final int batchConcurrency;
+    private final Duration upstreamTimeout;
+    private final Cache<String, LastKnownGood> lastKnownGood;
+    private final AtomicLong fallbacksServed = new AtomicLong();
 
     @Autowired
-    public MarketDataServiceImpl(WebClient webClient) {
-        this.webClient = webClient;
+    public MarketDataServiceImpl(MarketDataProvider marketDataProvider, ObjectMapper objectMapper,
+            RequestCoalescer requestCoalescer, QuoteCache quoteCache, UpstreamRateLimiter rateLimiter,
+            UpstreamCircuitBreaker circuitBreaker, MarketDataDiskCache diskCache,
+            @Value("${marketdata.batch.concurrency:4}") int batchConcurrency,
+            @Value("${marketdata.upstream.timeout:15s}") Duration upstreamTimeout,
+            @Value("${marketdata.fallback.max-memory:32MB}") DataSize fallbackMaxMemory) {
+        this.marketDataProvider = marketDataProvider;
+        this.objectMapper = objectMapper;
+        this.requestCoalescer = requestCoalescer;
+        this.quoteCache = quoteCache;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.diskCache = diskCache;
+        this.batchConcurrency = batchConcurrency;
+        this.upstreamTimeout = upstreamTimeout;
+        this.lastKnownGood = Caffeine.newBuilder()
+                .maximumWeight(fallbackMaxMemory.toBytes())
+                .<String, LastKnownGood>weigher((key, good) -> key.length() + good.body.length)
+                .build();
     }
 
     @Override
     public JsonNode fetchMonthData(String symbol) {
-        String apiKey = dotenv.get("ALPHAVANTAGE_API_KEY");
-        String apiUrl = ALPHA_VANTAGE_BASE_URL + "/query?function=TIME_SERIES_MONTHLY&symbol=" + symbol + "&apikey="
-                + apiKey;
-
-        JsonNode response = webClient.get()
-                .uri(apiUrl)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-
-        if (response.has("Error Message")) {
-            String errorMessage = response.get("Error Message").asText();
-            throw new RuntimeException("Error fetching month data service: " + errorMessage);
-        } else if (response.has("Information")) {
-            throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
-        }
-        return response;
+        return fetchMonthDataAsync(symbol).block();
     }
 
     @Override
     public JsonNode fetchDailyData(String symbol, String outputSize) {
-        String apiKey = dotenv.get("ALPHAVANTAGE_API_KEY");
-        String apiUrl = ALPHA_VANTAGE_BASE_URL + "/query?function=TIME_SERIES_DAILY&symbol=" + symbol + "&outputsize="
-                + outputSize + "&apikey=" + apiKey;
-
-        JsonNode response = webClient.get()
-                .uri(apiUrl)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-
-        if (response.has("Error Message")) {
-            String errorMessage = response.get("Error Message").asText();
-            throw new RuntimeException("Error fetching daily data service: " + errorMessage);
-        } else if (response.has("Information")) {
-            throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
-        }
-        return response;
+        return fetchDailyDataAsync(symbol, outputSize).block();
     }
 
     @Override
     public JsonNode fetchCurrentData(String symbol) {
-        String apiKey = dotenv.get("ALPHAVANTAGE_API_KEY");
-        String apiUrl = ALPHA_VANTAGE_BASE_URL + "/query?function=GLOBAL_QUOTE&symbol=" + symbol + "&apikey=" + apiKey;
-
-        JsonNode response = webClient.get()
-                .uri(apiUrl)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-
-        if (response.has("Global Quote") && response.get("Global Quote").isEmpty()) {
-            throw new RuntimeException("Global Quote data is empty for the provided symbol.");
-        } else if (response.has("Information")) {
-            throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
-        }
+        return fetchCurrentDataAsync(symbol).block();
+    }
 
-        return response;
+    @Override
+    public Map<String, Double> fetchCurrentPrices(Collection<String> symbols) {
+        Map<String, Double> prices = fetchCurrentPricesAsync(symbols).block();
+        return prices == null ? new HashMap<>() : prices;
     }
 
     @Override
     public JsonNode fetchIntraday(String symbol, String month) {
-        String apiKey = dotenv.get("ALPHAVANTAGE_API_KEY");
-        String apiUrl = ALPHA_VANTAGE_BASE_URL
-                + "/query?function=TIME_SERIES_INTRADAY&symbol=" + symbol
-                + "&interval=15min&month=" + month
-                + "&outputsize=compact&apikey=" + apiKey;
-
-        JsonNode response = webClient.get()
-                .uri(apiUrl)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-
-        if (response.has("Error Message")) {
-            String errorMessage = response.get("Error Message").asText();
-            throw new RuntimeException("Error fetching intraday data service: " + errorMessage);
-        } else if (response.has("Information")) {
-            throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
-        }
-        return response;
+        return fetchIntradayAsync(symbol, month).block();
     }
 
     @Override
     public JsonNode fetchOverviewData(String symbol) {
-        String apiKey = dotenv.get("ALPHAVANTAGE_API_KEY");
-        String apiUrl = ALPHA_VANTAGE_BASE_URL + "/query?function=OVERVIEW&symbol=" + symbol + "&apikey=" + apiKey;
-
-        JsonNode response = webClient.get()
-                .uri(apiUrl)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-        if (response.isEmpty()) {
-            throw new IllegalArgumentException("No data found for symbol: " + symbol);
-        } else if (response.has("Information")) {
-            throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
-        }
-        return response;
+        return fetchOverviewDataAsync(symbol).block();
     }
 
     @Override
     public JsonNode fetchThreeMonthTreasuryYield() {
-        String apiKey = System.getenv("ALPHAVANTAGE_API_KEY"); // Make sure the API key is set as an environment
-                                                               // variable
-        String apiUrl = ALPHA_VANTAGE_BASE_URL
-                + "/query?function=TREASURY_YIELD&interval=monthly&maturity=3month&apikey=" + apiKey;
-
-        JsonNode response = webClient.get()
-                .uri(apiUrl)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-
-        if (response == null || response.isEmpty()) {
-            throw new IllegalArgumentException("No data found for 3-month Treasury yield");
-        } else if (response.has("Information")) {
-            throw new RuntimeException("Error fetching data from service: " + response.get("Information").asText());
-        }
-
-        return response;
+        return fetchThreeMonthTreasuryYieldAsync().block();
     }
 
     @Override
     public JsonNode fetchSearchTicker(String searchTerm) {
-        String apiKey = dotenv.get("ALPHAVANTAGE_API_KEY");
-        String apiUrl = ALPHA_VANTAGE_BASE_URL + "/query?function=SYMBOL_SEARCH&keywords=" + searchTerm + "&apikey="
-                + apiKey;
-        JsonNode response = webClient.get()
-                .uri(apiUrl)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-        if (response == null || response.isEmpty()) {
-            throw new IllegalArgumentException("No data found for word searched");
-        } else if (response.path("bestMatches").isEmpty()) {
-            JsonNode infoNode = response.get("Information");
-            if (infoNode != null) {
-                throw new RuntimeException("Error fetching data from service: " + infoNode.asText());
-            } else {
-                throw new RuntimeException("No matches found and no additional information provided");
+        return fetchSearchTickerAsync(searchTerm).block();
+    }
+
+    @Override
+    public Mono<JsonNode> fetchMonthDataAsync(String symbol) {
+        MarketDataRequest request = MarketDataRequest.of("TIME_SERIES_MONTHLY").with("symbol", symbol);
+
+        return fetch(request, UpstreamPriority.CHART_HISTORY).map(response -> {
+            if (response.has("Error Message")) {
+                String errorMessage = response.get("Error Message").asText();
+                throw new RuntimeException("Error fetching month data service: " + errorMessage);
+            } else if (response.has("Information")) {
+                throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
             }
-        }
-        return response;
+            return response;
+        });
+    }
+
+    @Override
+    public Mono<JsonNode> fetchDailyDataAsync(String symbol, String outputSize) {
+        MarketDataRequest request = MarketDataRequest.of("TIME_SERIES_DAILY")
+                .with("symbol", symbol)
+                .with("outputsize", outputSize);
+
+        return fetch(request, UpstreamPriority.CHART_HISTORY)
+                .map(response -> {
+                    if (response.has("Error Message")) {
+                        String errorMessage = response.get("Error Message").asText();
+                        throw new RuntimeException("Error fetching daily data service: " + errorMessage);
+                    } else if (response.has("Information")) {
+                        throw new RuntimeException(
+                                "Error fetching intraday data service: " + response.get("Information").asText());
+                    }
+                    return response;
+                });
+    }
+
+    @Override
+    public Mono<JsonNode> fetchCurrentDataAsync(String symbol) {
+        return Mono.fromFuture(() -> quoteCache.get(symbol, this::loadCurrentData));
+    }
+
+    @Override
+    public Mono<Map<String, Double>> fetchCurrentPricesAsync(Collection<String> symbols) {
+        // Each symbol still goes through the quote cache and request coalescing, at
+        // most batchConcurrency upstream quotes are in flight at once
+        return Flux.fromIterable(new LinkedHashSet<>(symbols))
+                .flatMap(symbol -> fetchCurrentDataAsync(symbol)
+                        .map(quote -> Map.entry(symbol, quote.path("Global Quote").path("05. price").asDouble())),
+                        batchConcurrency)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, HashMap::new);
+    }
+
+    @Override
+    public boolean refreshCurrentData(String symbol) {
+        return quoteCache.refresh(symbol, this::loadCurrentData);
+    }
+
+    private CompletableFuture<JsonNode> loadCurrentData(String symbol, UpstreamPriority priority) {
+        MarketDataRequest request = MarketDataRequest.of("GLOBAL_QUOTE").with("symbol", symbol);
+
+        return fetch(request, priority).map(response -> {
+            if (response.has("Global Quote") && response.get("Global Quote").isEmpty()) {
+                throw new RuntimeException("Global Quote data is empty for the provided symbol.");
+            } else if (response.has("Information")) {
+                throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
+            }
+            return response;
+        }).toFuture();
+    }
+
+    @Override
+    public Mono<JsonNode> fetchIntradayAsync(String symbol, String month) {
+        MarketDataRequest request = MarketDataRequest.of("TIME_SERIES_INTRADAY")
+                .with("symbol", symbol)
+                .with("interval", "15min")
+                .with("month", month)
+                .with("outputsize", "compact");
+
+        return fetch(request, UpstreamPriority.CHART_HISTORY)
+                .map(response -> {
+                    if (response.has("Error Message")) {
+                        String errorMessage = response.get("Error Message").asText();
+                        throw new RuntimeException("Error fetching intraday data service: " + errorMessage);
+                    } else if (response.has("Information")) {
+                        throw new RuntimeException(
+                                "Error fetching intraday data service: " + response.get("Information").asText());
+                    }
+                    return response;
+                });
+    }
+
+    @Override
+    public Mono<JsonNode> fetchOverviewDataAsync(String symbol) {
+        MarketDataRequest request = MarketDataRequest.of("OVERVIEW").with("symbol", symbol);
+
+        return fetch(request, UpstreamPriority.BACKGROUND).map(response -> {
+            if (response.isEmpty()) {
+                throw new IllegalArgumentException("No data found for symbol: " + symbol);
+            } else if (response.has("Information")) {
+                throw new RuntimeException("Error fetching intraday data service: " + response.get("Information").asText());
+            }
+            return response;
+        });
     }
 
     @Override
-    public InputStream fetchDailyDataStream(String stockSymbol, String outputSize) throws IOException {
+    public Mono<JsonNode> fetchThreeMonthTreasuryYieldAsync() {
+        MarketDataRequest request = MarketDataRequest.of("TREASURY_YIELD")
+                .with("interval", "monthly")
+                .with("maturity", "3month");
+
+        return fetch(request, UpstreamPriority.BACKGROUND)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("No data found for 3-month Treasury yield")))
+                .map(response -> {
+                    if (response.isEmpty()) {
+                        throw new IllegalArgumentException("No data found for 3-month Treasury yield");
+                    } else if (response.has("Information")) {
+                        throw new RuntimeException(
+                                "Error fetching data from service: " + response.get("Information").asText());
+                    }
+                    return response;
+                });
+    }
+
+    @Override
+    public Mono<JsonNode> fetchSearchTickerAsync(String searchTerm) {
+        MarketDataRequest request = MarketDataRequest.of("SYMBOL_SEARCH").with("keywords", searchTerm);
+        return fetch(request, UpstreamPriority.SEARCH)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("No data found for word searched")))
+                .map(response -> {
+                    if (response.isEmpty()) {
+                        throw new IllegalArgumentException("No data found for word searched");
+                    } else if (response.path("bestMatches").isEmpty()) {
+                        JsonNode infoNode = response.get("Information");
+                        if (infoNode != null) {
+                            throw new RuntimeException("Error fetching data from service: " + infoNode.asText());
+                        } else {
+                            throw new RuntimeException("No matches found and no additional information provided");
+                        }
+                    }
+                    return response;
+                });
+    }
+
+    @Override
+    public InputStream fetchDailyDataStream(String stockSymbol, String outputSize, UpstreamPriority priority)
+            throws IOException {
         try {
-            String apiKey = dotenv.get("ALPHAVANTAGE_API_KEY");
-            String apiUrl = ALPHA_VANTAGE_BASE_URL + "/query?function=TIME_SERIES_DAILY&symbol=" + stockSymbol
-                    + "&outputsize=" + outputSize
-                    + "&apikey=" + apiKey;
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(apiUrl))
-                    .GET()
-                    .build();
-
-            HttpResponse<InputStream> response = httpClient.send(request, BodyHandlers.ofInputStream());
-            return response.body();
+            MarketDataRequest request = MarketDataRequest.of("TIME_SERIES_DAILY")
+                    .with("symbol", stockSymbol)
+                    .with("outputsize", outputSize);
+
+            if (!circuitBreaker.tryAcquirePermission()) {
+                throw new UpstreamUnavailableException("Market data upstream unavailable, serving cached data only",
+                        circuitBreaker.getRetryAfter());
+            }
+            try {
+                RequestCoalescer.await(rateLimiter.acquire(priority));
+            } catch (RuntimeException e) {
+                circuitBreaker.onIgnored();
+                throw e;
+            }
+            // A reader that stops early has still been served by the upstream. A rate
+            // limit notice is small, so only a body that fits one is kept to check it.
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            Flux<DataBuffer> body = marketDataProvider.stream(request)
+                    .doOnNext(buffer -> {
+                        int length = Math.min(buffer.readableByteCount(), MAX_NOTICE_BYTES + 1 - head.size());
+                        if (length > 0) {
+                            ByteBuffer bytes = ByteBuffer.allocate(length);
+                            buffer.toByteBuffer(buffer.readPosition(), bytes, 0, length);
+                            head.write(bytes.array(), 0, length);
+                        }
+                    })
+                    .doOnComplete(() -> onStreamEnd(head.toByteArray()))
+                    .doOnCancel(() -> onStreamEnd(head.toByteArray()))
+                    .doOnError(error -> circuitBreaker.onFailure());
+            return toInputStream(body);
         } catch (Exception e) {
             throw new IOException("Error fetching daily data stream for " + stockSymbol, e);
         }
     }
+
+    // The reader stops at a notice too, so a cancelled body may still have been one
+    private void onStreamEnd(byte[] head) {
+        if (isRateLimitNotice(head)) {
+            rateLimiter.drain();
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    // The body is piped to the reader as it downloads, so it is never held in memory
+    // as a whole. Closing the stream early cancels the download.
+    private static InputStream toInputStream(Flux<DataBuffer> body) throws java.io.IOException {
+        PipedInputStream pipe = new PipedInputStream(STREAM_BUFFER_BYTES);
+        PipedOutputStream outputStream = new PipedOutputStream(pipe);
+        DownloadInputStream inputStream = new DownloadInputStream(pipe);
+        DataBufferUtils.write(body.publishOn(Schedulers.boundedElastic()), outputStream)
+                .doOnError(inputStream::fail)
+                .doFinally(signal -> {
+                    try {
+                        outputStream.close();
+                    } catch (java.io.IOException e) {
+                        // The reader has already closed its end
+                    }
+                })
+                .subscribe(DataBufferUtils.releaseConsumer(), error -> {
+                    // Handed to the reader by the stream itself
+                });
+        return inputStream;
+    }
+
+    @Override
+    public Map<String, Long> getRequestStatistics() {
+        Map<String, Long> statistics = new HashMap<>();
+        statistics.put("upstreamCalls", requestCoalescer.getUpstreamCalls());
+        statistics.put("coalescedCalls", requestCoalescer.getCoalescedCalls());
+        statistics.put("inFlight", (long) requestCoalescer.getInFlightCount());
+        statistics.putAll(quoteCache.getStatistics());
+        statistics.putAll(rateLimiter.getStatistics());
+        statistics.putAll(circuitBreaker.getStatistics());
+        statistics.putAll(diskCache.getStatistics());
+        statistics.put("fallbacksServed", fallbacksServed.get());
+        return statistics;
+    }
+
+    // Responses that are still fresh on disk are served without an upstream call
+    private Mono<JsonNode> fetch(MarketDataRequest request, UpstreamPriority priority) {
+        return fromDisk(request).switchIfEmpty(Mono.defer(() -> fetchUpstream(request, priority)));
+    }
+
+    // Upstream failures and rate limit notices are answered with the last good
+    // response for the same request when there is one, flagged as stale
+    private Mono<JsonNode> fetchUpstream(MarketDataRequest request, UpstreamPriority priority) {
+        return Mono.fromFuture(() -> fetchBody(request, priority))
+                .flatMap(body -> {
+                    JsonNode response = parse(request, body);
+                    if (response.has("Information")) {
+                        return fallback(request).defaultIfEmpty(response);
+                    }
+                    if (!response.isEmpty() && !response.has("Error Message") && body.length <= MAX_FALLBACK_BYTES) {
+                        remember(request, body);
+                    }
+                    return Mono.just(response);
+                })
+                .onErrorResume(e -> fallback(request).switchIfEmpty(Mono.error(e)));
+    }
+
+    // Searches are keyed by the user's free text, so they are only kept on disk
+    // rather than taking memory from the quotes and overviews
+    private void remember(MarketDataRequest request, byte[] body) {
+        Instant fetchedAt = Instant.now();
+        if ("SYMBOL_SEARCH".equals(request.getFunction())) {
+            diskCache.put(request.key(), body, fetchedAt);
+            return;
+        }
+        LastKnownGood previous = lastKnownGood.asMap().put(request.key(), new LastKnownGood(body, fetchedAt));
+        // Coalesced callers share one body, it only needs writing once
+        if (previous == null || previous.body != body) {
+            diskCache.put(request.key(), body, fetchedAt);
+        }
+    }
+
+    private Mono<JsonNode> fromDisk(MarketDataRequest request) {
+        return Mono.defer(() -> {
+            Instant storedAt = diskCache.getStoredAt(request.key());
+            if (storedAt == null || !isFresh(request, storedAt)) {
+                return Mono.empty();
+            }
+            return Mono.fromCallable(() -> diskCache.get(request.key()))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .map(entry -> parse(request, entry.getBody()));
+        });
+    }
+
+    // Quotes are as fresh as the quote cache would keep them, other functions for
+    // their configured time to live
+    private boolean isFresh(MarketDataRequest request, Instant storedAt) {
+        Instant now = Instant.now();
+        if ("GLOBAL_QUOTE".equals(request.getFunction())) {
+            return now.isBefore(quoteCache.freshUntil(storedAt));
+        }
+        return diskCache.getTimeToLive(request.getFunction())
+                .map(timeToLive -> now.isBefore(storedAt.plus(timeToLive)))
+                .orElse(false);
+    }
+
+    private JsonNode parse(MarketDataRequest request, byte[] body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Error parsing market data response for " + request.getFunction(), e);
+        }
+    }
+
+    // The last good response kept in memory, or the one on disk after a restart
+    private Mono<JsonNode> fallback(MarketDataRequest request) {
+        LastKnownGood entry = lastKnownGood.getIfPresent(request.key());
+        Mono<LastKnownGood> lastGood = entry != null
+                ? Mono.just(entry)
+                : Mono.fromCallable(() -> diskCache.get(request.key()))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .map(stored -> new LastKnownGood(stored.getBody(), stored.getStoredAt()));
+        return lastGood.flatMap(good -> {
+            JsonNode response = parse(request, good.body);
+            if (!(response instanceof ObjectNode)) {
+                return Mono.empty();
+            }
+            ((ObjectNode) response).put("stale", true);
+            ((ObjectNode) response).put("staleSince", good.fetchedAt.toString());
+            fallbacksServed.incrementAndGet();
+            return Mono.just(response);
+        });
+    }
+
+    // Concurrent callers asking for the same function, symbol and parameters share
+    // a single upstream request and its body. Only that request spends a token
+    // from the upstream budget. While the circuit is open calls fail fast.
+    private CompletableFuture<byte[]> fetchBody(MarketDataRequest request, UpstreamPriority priority) {
+        return requestCoalescer.execute(request.key(), () -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return CompletableFuture.failedFuture(new UpstreamUnavailableException(
+                        "Market data upstream unavailable, serving cached data only", circuitBreaker.getRetryAfter()));
+            }
+            return rateLimiter.acquire(priority)
+                    .whenComplete((granted, error) -> {
+                        if (error != null) {
+                            circuitBreaker.onIgnored();
+                        }
+                    })
+                    .thenCompose(granted -> callProvider(request));
+        });
+    }
+
+    private CompletableFuture<byte[]> callProvider(MarketDataRequest request) {
+        CompletableFuture<byte[]> response;
+        try {
+            // The timeout cancels the provider's future, which cancels the HTTP exchange
+            // instead of leaving it holding a pooled connection until the read timeout
+            response = Mono.fromFuture(marketDataProvider.fetch(request))
+                    .timeout(upstreamTimeout)
+                    .toFuture();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((body, error) -> {
+            if (error != null) {
+                circuitBreaker.onFailure();
+            } else if (isRateLimitNotice(body)) {
+                rateLimiter.drain();
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        });
+    }
+
+    private boolean isRateLimitNotice(byte[] body) {
+        if (body == null || body.length > MAX_NOTICE_BYTES) {
+            return false;
+        }
+        try {
+            return objectMapper.readTree(body).has("Information");
+        } catch (java.io.IOException e) {
+            return false;
+        }
+    }
+
+    // Ends with the download's error once the reader has read everything that
+    // arrived, instead of ending early as if the body were complete
+    private static class DownloadInputStream extends FilterInputStream {
+        private volatile Throwable failure;
+
+        DownloadInputStream(PipedInputStream pipe) {
+            super(pipe);
+        }
+
+        void fail(Throwable error) {
+            failure = error;
+        }
+
+        @Override
+        public int read() throws java.io.IOException {
+            return checkEnd(super.read());
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws java.io.IOException {
+            return checkEnd(super.read(buffer, offset, length));
+        }
+
+        private int checkEnd(int read) throws java.io.IOException {
+            if (read == -1 && failure != null) {
+                throw new java.io.IOException("Daily data download failed", failure);
+            }
+            return read;
+        }
+    }
+
+    private static class LastKnownGood {
+        private final byte[] body;
+        private final Instant fetchedAt;
+
+        LastKnownGood(byte[] body, Instant fetchedAt) {
+            this.body = body;
+            this.fetchedAt = fetchedAt;
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package com.oop.appa.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.oop.appa.event.PortfolioChangedEvent;
+import com.oop.appa.event.PositionChangedEvent;
+
+/**
+ * Evicts the analytics derived from a portfolio's holdings when they change. The
+ * holdings memoized for the current request are dropped straight away, so later
+ * reads in the same request see the change. The cached volatilities are only
+ * evicted once the change is committed, so a concurrent read cannot cache the old
+ * holdings again in between. Only the changed portfolio's keys are evicted.
+ */
+@Component
+public class PortfolioCacheInvalidator {
+    private static final String[] PORTFOLIO_CACHES = { "portfolioVolatility", "AnnualizedportfolioVolatility" };
+
+    private final CacheManager cacheManager;
+    private final PortfolioPricingContext pricingContext;
+
+    public PortfolioCacheInvalidator(CacheManager cacheManager, PortfolioPricingContext pricingContext) {
+        this.cacheManager = cacheManager;
+        this.pricingContext = pricingContext;
+    }
+
+    @EventListener
+    public void evictRequestHoldings(PositionChangedEvent event) {
+        pricingContext.evictHoldings(event.getPortfolioId());
+    }
+
+    @EventListener
+    public void evictRequestHoldings(PortfolioChangedEvent event) {
+        if (event.isDeleted()) {
+            pricingContext.evictHoldings(event.getPortfolioId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void evictAnalytics(PositionChangedEvent event) {
+        evict(event.getPortfolioId());
+    }
+
+    // Volatilities only depend on the holdings, so an update of the portfolio's name
+    // or capital keeps them
+    @TransactionalEventListener(fallbackExecution = true)
+    public void evictAnalytics(PortfolioChangedEvent event) {
+        if (event.isDeleted()) {
+            evict(event.getPortfolioId());
+        }
+    }
+
+    private void evict(Integer portfolioId) {
+        for (String name : PORTFOLIO_CACHES) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.evict(portfolioId);
+            }
+        }
+    }
+}
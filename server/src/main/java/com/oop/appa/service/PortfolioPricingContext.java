@@ -0,0 +1,116 @@
+package com.oop.appa.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.oop.appa.dao.PortfolioStockRepository;
+import com.oop.appa.entity.PortfolioStock;
+
+/**
+ * Holdings and current prices memoized for the duration of one HTTP request, so
+ * analytics that build on each other read each portfolio from the database and
+ * price each symbol at most once per request. Outside a request, for example on a
+ * scheduler thread, every lookup goes straight to the repository and market data.
+ */
+@Component
+public class PortfolioPricingContext {
+    private static final String ATTRIBUTE = PortfolioPricingContext.class.getName();
+
+    private final PortfolioStockRepository portfolioStockRepository;
+    private final MarketDataService marketDataService;
+
+    public PortfolioPricingContext(PortfolioStockRepository portfolioStockRepository,
+            MarketDataService marketDataService) {
+        this.portfolioStockRepository = portfolioStockRepository;
+        this.marketDataService = marketDataService;
+    }
+
+    public List<PortfolioStock> getHoldings(Integer portfolioId) {
+        Memo memo = memo();
+        if (memo == null) {
+            return portfolioStockRepository.findByPortfolioPortfolioId(portfolioId);
+        }
+        return memo.holdings.computeIfAbsent(portfolioId, portfolioStockRepository::findByPortfolioPortfolioId);
+    }
+
+    /**
+     * Current prices of the given symbols, only fetching the ones not yet priced in
+     * this request.
+     */
+    public Map<String, Double> getCurrentPrices(Collection<String> symbols) {
+        Memo memo = memo();
+        if (memo == null) {
+            return marketDataService.fetchCurrentPrices(symbols);
+        }
+        Set<String> missing = new LinkedHashSet<>(symbols);
+        missing.removeAll(memo.prices.keySet());
+        if (!missing.isEmpty()) {
+            memo.prices.putAll(marketDataService.fetchCurrentPrices(missing));
+        }
+        Map<String, Double> prices = new HashMap<>();
+        for (String symbol : symbols) {
+            prices.put(symbol, memo.prices.get(symbol));
+        }
+        return prices;
+    }
+
+    /**
+     * The portfolio's holdings valued at current prices, computed once per request.
+     */
+    public PortfolioValuationSnapshot getValuation(Integer portfolioId) {
+        Memo memo = memo();
+        if (memo == null) {
+            return value(portfolioId);
+        }
+        return memo.valuations.computeIfAbsent(portfolioId, this::value);
+    }
+
+    private PortfolioValuationSnapshot value(Integer portfolioId) {
+        List<PortfolioStock> holdings = getHoldings(portfolioId);
+        Set<String> symbols = new LinkedHashSet<>();
+        for (PortfolioStock holding : holdings) {
+            symbols.add(holding.getStockSymbol());
+        }
+        return PortfolioValuationSnapshot.of(holdings, getCurrentPrices(symbols));
+    }
+
+    /**
+     * Drops the memoized holdings and valuation of a portfolio after they were
+     * changed, so later reads in the same request see the change.
+     */
+    public void evictHoldings(Integer portfolioId) {
+        Memo memo = memo();
+        if (memo != null) {
+            memo.holdings.remove(portfolioId);
+            memo.valuations.remove(portfolioId);
+        }
+    }
+
+    private static Memo memo() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Memo memo = (Memo) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (memo == null) {
+            memo = new Memo();
+            attributes.setAttribute(ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+        }
+        return memo;
+    }
+
+    private static class Memo {
+        private final Map<Integer, List<PortfolioStock>> holdings = new ConcurrentHashMap<>();
+        private final Map<String, Double> prices = new ConcurrentHashMap<>();
+        private final Map<Integer, PortfolioValuationSnapshot> valuations = new ConcurrentHashMap<>();
+    }
+}
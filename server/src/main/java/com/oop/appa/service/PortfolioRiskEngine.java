@@ -0,0 +1,214 @@
+package com.oop.appa.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Portfolio volatility from the covariance of the holdings' returns, so
+ * correlation between holdings is taken into account: σ = √(wᵀΣw).
+ *
+ * Each symbol's month end returns over the last year are laid out on a calendar
+ * grid (one cell per month), so the returns of all symbols line up by cell. Cells
+ * without a return are NaN. The matrix only uses the cells every symbol has a
+ * return in, so it is the covariance of one set of observations and stays
+ * positive semi-definite. Variances are population variances, like the single
+ * stock volatilities, so a portfolio of perfectly correlated holdings gets the
+ * weighted sum of their volatilities.
+ *
+ * Returns are cached per symbol and covariance matrices per symbol set. Both are
+ * recomputed once a symbol's history gains a day or the window moves on.
+ */
+@Component
+public class PortfolioRiskEngine {
+    private static final int MAX_CACHED_MATRICES = 64;
+
+    private final PriceHistoryStore priceHistoryStore;
+    private final Map<String, SymbolReturns> returns = new ConcurrentHashMap<>();
+    private final Map<String, CovarianceMatrix> matrices = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CovarianceMatrix> eldest) {
+                    return size() > MAX_CACHED_MATRICES;
+                }
+            });
+
+    public PortfolioRiskEngine(PriceHistoryStore priceHistoryStore) {
+        this.priceHistoryStore = priceHistoryStore;
+    }
+
+    /**
+     * Monthly volatility of a portfolio holding the symbols at the given weights.
+     */
+    public double portfolioVolatility(String[] symbols, double[] weights) {
+        if (symbols.length != weights.length) {
+            throw new IllegalArgumentException("Every symbol needs a weight");
+        }
+        if (symbols.length == 0) {
+            return 0.0;
+        }
+        String[] sortedSymbols = symbols.clone();
+        Arrays.sort(sortedSymbols);
+        double[] sortedWeights = new double[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            sortedWeights[Arrays.binarySearch(sortedSymbols, symbols[i])] += weights[i];
+        }
+
+        double[][] covariance = covarianceMatrix(sortedSymbols);
+        double variance = 0.0;
+        for (int i = 0; i < sortedSymbols.length; i++) {
+            double row = 0.0;
+            for (int j = 0; j < sortedSymbols.length; j++) {
+                row += covariance[i][j] * sortedWeights[j];
+            }
+            variance += sortedWeights[i] * row;
+        }
+        // Σ is positive semi-definite, only rounding can take a zero variance below 0
+        return Math.sqrt(Math.max(variance, 0.0));
+    }
+
+    // Symbols must be sorted and distinct
+    private double[][] covarianceMatrix(String[] symbols) {
+        SymbolReturns[] symbolReturns = new SymbolReturns[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            symbolReturns[i] = returnsOf(symbols[i]);
+        }
+        String key = String.join(",", symbols);
+        CovarianceMatrix cached = matrices.get(key);
+        if (cached != null && cached.isFor(symbolReturns)) {
+            return cached.values;
+        }
+
+        int size = symbols.length;
+        double[][] deviations = deviationsOnCommonCells(symbolReturns);
+        int count = deviations[0].length;
+        double[][] values = new double[size][size];
+        // Each row only fills the upper triangle and mirrors it, so rows never
+        // write to the same cell
+        IntStream.range(0, size).parallel().forEach(i -> {
+            for (int j = i; j < size; j++) {
+                double value = count == 0 ? 0.0 : dotProduct(deviations[i], deviations[j]) / count;
+                values[i][j] = value;
+                values[j][i] = value;
+            }
+        });
+        matrices.put(key, new CovarianceMatrix(symbolReturns, values));
+        return values;
+    }
+
+    private SymbolReturns returnsOf(String symbol) {
+        MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(symbol);
+        LocalDate today = LocalDate.now();
+        LocalDate windowStart = today.minusYears(1).withDayOfMonth(1);
+        int lastDay = dailySeries.isEmpty() ? 0 : dailySeries.epochDay(dailySeries.size() - 1);
+        String key = symbol.toUpperCase();
+
+        SymbolReturns cached = returns.get(key);
+        if (cached != null && cached.windowStart.equals(windowStart) && cached.lastDay == lastDay) {
+            return cached;
+        }
+        SymbolReturns computed = new SymbolReturns(windowStart, lastDay,
+                toGrid(dailySeries.slice(windowStart, today), windowStart, today));
+        returns.put(key, computed);
+        return computed;
+    }
+
+    // Each return is placed in the grid cell of the month of the later of its two closes
+    private static double[] toGrid(MappedPriceSeries window, LocalDate windowStart, LocalDate today) {
+        PriceSeries closes = PriceSeries.monthEnds(window);
+        int cells = cell(today, windowStart) + 1;
+        double[] grid = new double[cells];
+        Arrays.fill(grid, Double.NaN);
+        for (int i = 1; i < closes.size(); i++) {
+            grid[cell(closes.date(i), windowStart)] = (closes.close(i) - closes.close(i - 1)) / closes.close(i - 1);
+        }
+        return grid;
+    }
+
+    private static int cell(LocalDate date, LocalDate windowStart) {
+        return (int) YearMonth.from(windowStart).until(YearMonth.from(date), ChronoUnit.MONTHS);
+    }
+
+    // Each symbol's returns in the cells every symbol has a return in, less their mean
+    private static double[][] deviationsOnCommonCells(SymbolReturns[] symbolReturns) {
+        int cells = Integer.MAX_VALUE;
+        for (SymbolReturns symbol : symbolReturns) {
+            cells = Math.min(cells, symbol.values.length);
+        }
+        int[] common = new int[cells];
+        int count = 0;
+        for (int t = 0; t < cells; t++) {
+            boolean everySymbol = true;
+            for (SymbolReturns symbol : symbolReturns) {
+                if (Double.isNaN(symbol.values[t])) {
+                    everySymbol = false;
+                    break;
+                }
+            }
+            if (everySymbol) {
+                common[count++] = t;
+            }
+        }
+        double[][] deviations = new double[symbolReturns.length][count];
+        for (int i = 0; i < symbolReturns.length; i++) {
+            double[] values = symbolReturns[i].values;
+            double sum = 0.0;
+            for (int k = 0; k < count; k++) {
+                sum += values[common[k]];
+            }
+            double mean = count == 0 ? 0.0 : sum / count;
+            for (int k = 0; k < count; k++) {
+                deviations[i][k] = values[common[k]] - mean;
+            }
+        }
+        return deviations;
+    }
+
+    private static double dotProduct(double[] x, double[] y) {
+        double sum = 0.0;
+        for (int t = 0; t < x.length; t++) {
+            sum += x[t] * y[t];
+        }
+        return sum;
+    }
+
+    private static class SymbolReturns {
+        private final LocalDate windowStart;
+        private final int lastDay;
+        private final double[] values;
+
+        SymbolReturns(LocalDate windowStart, int lastDay, double[] values) {
+            this.windowStart = windowStart;
+            this.lastDay = lastDay;
+            this.values = values;
+        }
+    }
+
+    private static class CovarianceMatrix {
+        private final SymbolReturns[] inputs;
+        private final double[][] values;
+
+        CovarianceMatrix(SymbolReturns[] inputs, double[][] values) {
+            this.inputs = inputs;
+            this.values = values;
+        }
+
+        // Still valid while every symbol's cached returns are the ones it was built from
+        boolean isFor(SymbolReturns[] current) {
+            for (int i = 0; i < inputs.length; i++) {
+                if (inputs[i] != current[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -16,6 +17,7 @@ import com.oop.appa.dto.PortfolioCreationDTO;
 import com.oop.appa.entity.AccessLog;
 import com.oop.appa.entity.Portfolio;
 import com.oop.appa.entity.User;
+import com.oop.appa.event.PortfolioChangedEvent;
 
 import jakarta.persistence.EntityNotFoundException;
 
@@ -25,13 +27,15 @@ public class PortfolioServiceImpl implements PortfolioService{
     private PortfolioRepository portfolioRepository;
     private UserRepository userRepository;
     private AccessLogRepository accessLogRepository;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public PortfolioServiceImpl (PortfolioRepository portfolioRepository, UserRepository userRepository,
-            AccessLogRepository accessLogRepository) {
+            AccessLogRepository accessLogRepository, ApplicationEventPublisher eventPublisher) {
         this.portfolioRepository = portfolioRepository;
         this.userRepository = userRepository;
         this.accessLogRepository = accessLogRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     // GET
@@ -172,6 +176,7 @@ public class PortfolioServiceImpl implements PortfolioService{
     
             Portfolio updatedPortfolio = portfolioRepository.save(existingPortfolio);
             accessLogRepository.save(new AccessLog(existingPortfolio.getUser(), action));
+            eventPublisher.publishEvent(new PortfolioChangedEvent(portfolioId, false));
     
             return updatedPortfolio;
         } catch (Exception e) {
@@ -189,6 +194,7 @@ public class PortfolioServiceImpl implements PortfolioService{
             Integer deletedPortfolioId = existingPortfolio.getPortfolioId();
             String portfolioName = existingPortfolio.getName();
             portfolioRepository.deleteById(id);
+            eventPublisher.publishEvent(new PortfolioChangedEvent(deletedPortfolioId, true));
             String action = String.format("User deletes portfolio #%d - %s", deletedPortfolioId, portfolioName);
             accessLogRepository.save(new AccessLog(deletedPortfolioUser, action));
         } catch (Exception e) {
@@ -200,8 +206,11 @@ public class PortfolioServiceImpl implements PortfolioService{
     @Override
     public void deleteByUserId(Integer user_id) {
         try {
-            portfolioRepository.deleteByUserId(user_id);
             List<Portfolio> portfolios = portfolioRepository.findByUserId(user_id);
+            portfolioRepository.deleteByUserId(user_id);
+            for (Portfolio portfolio : portfolios) {
+                eventPublisher.publishEvent(new PortfolioChangedEvent(portfolio.getPortfolioId(), true));
+            }
             User user = portfolios.get(0).getUser();
             String action = String.format("User deletes all portfolios under user ID: " + user_id);
             accessLogRepository.save(new AccessLog(user, action));
@@ -2,7 +2,6 @@ package com.oop.appa.service;
 
 import java.util.List;
 import java.util.Map;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -15,6 +14,7 @@ import com.oop.appa.dto.PortfolioStockRebalancingDTO;
 import com.oop.appa.dto.RebalancingTargetPercentagesDTO;
 import com.oop.appa.entity.PortfolioStock;
 import jakarta.transaction.Transactional;
+import reactor.core.publisher.Mono;
 
 @Service
 public interface PortfolioStockService {
@@ -31,9 +31,6 @@ public interface PortfolioStockService {
     @Transactional
     public PortfolioStock createPortfolioStock(PortfolioStockCreationDTO dto);
 
-    @CacheEvict(value = "portfolioVolatility", key = "#portfolioId")
-    public void clearPortfolioVolatilityCache(Integer portfolioId);
-
     @Transactional
     public void sellPortfolioStock(Integer portfolioId, String stockSymbol, Integer quantity);
     // UPDATE
@@ -65,6 +62,9 @@ public interface PortfolioStockService {
 
     public Map<String, Object> getPortfolioSummary(Integer portfolioId);
 
+    // Changes whenever the summary would, from the holdings and prices it is valued at
+    public String getPortfolioSummaryVersion(Integer portfolioId);
+
     @Cacheable(value = "portfolioVolatility", key = "#portfolioId")
     public Map<String, Double> calculatePortfolioMonthlyVolatility(Integer portfolioId);
 
@@ -79,4 +79,13 @@ public interface PortfolioStockService {
     @Transactional
     public Map<String, String> executeRebalancePortfolioTransactions(PortfolioStockRebalancingDTO portfolioStocksToBeAdjusted, Integer portfolioId);
 
+    // Non-blocking variants for the analytics endpoints that wait on live quotes
+    public Mono<Map<String, Double>> calculateWeightedStockReturnAsync(Integer portfolioId, String stockSymbol);
+
+    public Mono<Map<String, Double>> calculateStockWeightAsync(Integer portfolioId, String stockSymbol);
+
+    public Mono<Map<String, Double>> calculateAnnualisedReturnAsync(Integer portfolioStockId, String stockSymbol);
+
+    public Mono<PortfolioGroupingSummary> calculateTotalPortfolioValueByGroupAsync(Integer portfolioId, String groupBy);
+
 }
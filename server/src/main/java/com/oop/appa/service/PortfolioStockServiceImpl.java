@@ -8,11 +8,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -27,9 +30,12 @@ import com.oop.appa.entity.AccessLog;
 import com.oop.appa.entity.Portfolio;
 import com.oop.appa.entity.PortfolioStock;
 import com.oop.appa.entity.Stock;
+import com.oop.appa.event.PositionChangedEvent;
 
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 public class PortfolioStockServiceImpl implements PortfolioStockService {
@@ -38,17 +44,24 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
     private StockService stockService;
     private PortfolioService portfolioService;
     private AccessLogRepository accessLogRepository;
+    private PortfolioPricingContext pricingContext;
+    private PortfolioRiskEngine riskEngine;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public PortfolioStockServiceImpl(PortfolioStockRepository portfolioStockRepository,
             MarketDataService marketDataService,
             StockService stockService, PortfolioService portfolioService,
-            AccessLogRepository accessLogRepository) {
+            AccessLogRepository accessLogRepository, PortfolioPricingContext pricingContext,
+            PortfolioRiskEngine riskEngine, ApplicationEventPublisher eventPublisher) {
         this.portfolioStockRepository = portfolioStockRepository;
         this.marketDataService = marketDataService;
         this.stockService = stockService;
         this.portfolioService = portfolioService;
         this.accessLogRepository = accessLogRepository;
+        this.pricingContext = pricingContext;
+        this.riskEngine = riskEngine;
+        this.eventPublisher = eventPublisher;
     }
 
     // GET
@@ -151,6 +164,7 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
                         stock.getStockSymbol(), portfolio.getPortfolioId(), portfolio.getName(), dto.getBuyPrice(),
                         dto.getQuantity(), dto.getBuyDate());
                 accessLogRepository.save(new AccessLog(portfolio.getUser(), action));
+                eventPublisher.publishEvent(new PositionChangedEvent(portfolio.getPortfolioId(), stock.getStockSymbol()));
                 return portfolioStockRepository.save(existingPortfolioStock);
             } else {
                 // check if portfolio has sufficient capital to purchase stock
@@ -178,9 +192,7 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
                         stock.getStockSymbol(), portfolio.getPortfolioId(), portfolio.getName(), dto.getBuyPrice(),
                         dto.getQuantity(), dto.getBuyDate());
                 accessLogRepository.save(new AccessLog(portfolio.getUser(), action));
-
-                clearPortfolioVolatilityCache(portfolio.getPortfolioId());
-                calculatePortfolioAnnualizedVolatility(portfolio.getPortfolioId());
+                eventPublisher.publishEvent(new PositionChangedEvent(portfolio.getPortfolioId(), stock.getStockSymbol()));
                 return portfolioStockRepository.save(portfolioStock);
             }
         } catch (Exception e) {
@@ -188,10 +200,6 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
         }
     }
 
-    @Override
-    public void clearPortfolioVolatilityCache(Integer portfolioId) {
-    }
-
     @Override
     public void sellPortfolioStock(Integer portfolioId, String stockSymbol, Integer quantity) {
         // add when all stocks sold, delete from portfolio stocks
@@ -215,6 +223,7 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
             } else {
                 portfolioStockRepository.save(portfolioStock);
             }
+            eventPublisher.publishEvent(new PositionChangedEvent(portfolioId, stockSymbol));
             String action = String.format("User sells %d shares of stock %s from Portfolio #%d - %s at price",
                     quantity, stockSymbol, portfolioStock.getPortfolio().getPortfolioId(),
                     portfolioStock.getPortfolio().getName(), portfolioStockCurrentPrice);
@@ -230,6 +239,10 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
     public void save(PortfolioStock stock) {
         try {
             portfolioStockRepository.save(stock);
+            if (stock.getPortfolio() != null) {
+                eventPublisher.publishEvent(
+                        new PositionChangedEvent(stock.getPortfolio().getPortfolioId(), stock.getStockSymbol()));
+            }
         } catch (Exception e) {
             throw new RuntimeException("Error saving PortfolioStock service: " + e.getMessage(), e);
         }
@@ -242,6 +255,8 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
             PortfolioStock portfolioStockRef = portfolioStockRepository.findById(portfolioStock.getId())
                     .orElseThrow(() -> new EntityNotFoundException("PortfolioStock not found"));
             portfolioStockRepository.delete(portfolioStockRef);
+            eventPublisher.publishEvent(new PositionChangedEvent(portfolioStock.getPortfolio().getPortfolioId(),
+                    portfolioStock.getStock().getStockSymbol()));
             String action = String.format("User drops stock %s from Portfolio #%d - %s",
                     portfolioStock.getStock().getStockSymbol(), portfolioStock.getPortfolio().getPortfolioId(),
                     portfolioStock.getPortfolio().getName());
@@ -259,6 +274,7 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
                     .orElseThrow(() -> new EntityNotFoundException("PortfolioStock not found"));
             Portfolio portfolio = portfolioStock.getPortfolio();
             portfolioStockRepository.delete(portfolioStock);
+            eventPublisher.publishEvent(new PositionChangedEvent(portfolioId, stockSymbol));
             portfolio.setRemainingCapital(
                     portfolio.getRemainingCapital() + portfolioStock.getBuyPrice() * portfolioStock.getQuantity());
             portfolioService.updatePortfolio(portfolioId, portfolio);
@@ -277,6 +293,8 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
                     .orElseThrow(() -> new EntityNotFoundException("PortfolioStock not found"));
             portfolioStockRepository.deleteById(portfolioStockId);
             Portfolio portfolio = portfolioStock.getPortfolio();
+            eventPublisher.publishEvent(
+                    new PositionChangedEvent(portfolio.getPortfolioId(), portfolioStock.getStock().getStockSymbol()));
             portfolio.setRemainingCapital(
                     portfolio.getRemainingCapital() + portfolioStock.getBuyPrice() * portfolioStock.getQuantity());
             String action = String.format("User deletes stock %s from  Portfolio #%d - %s",
@@ -292,103 +310,85 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
     // Other services
     @Override
     public Map<String, Double> calculateWeightedStockReturn(Integer portfolioId, String stockSymbol) {
-        Map<String, Double> weightedReturns = new HashMap<>();
-        try {
-            PortfolioStock stock = findByPortfolioIdAndStockSymbol(portfolioId, stockSymbol);
-            double totalReturn = 0;
-            int totalQuantity = stock.getQuantity();
-            double currentPrice = marketDataService.fetchCurrentData(stockSymbol).path("Global Quote")
-                    .path("05. price").asDouble();
-            double buyPrice = stock.getBuyPrice();
-            double individualReturn = ((currentPrice - buyPrice) / buyPrice) * 100;
-            totalReturn += (double) stock.getQuantity() / totalQuantity * individualReturn;
-
-            weightedReturns.put("weightedReturn", totalReturn);
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating weighted stock return service: " + e.getMessage(), e);
-        }
-        return weightedReturns;
+        return calculateWeightedStockReturnAsync(portfolioId, stockSymbol).block();
     }
 
     @Override
     public Map<String, Double> calculateStockWeight(Integer portfolioId, String stockSymbol) {
-        Map<String, Double> stockWeightResult = new HashMap<>();
-        try {
-            PortfolioStock currentStock = findByPortfolioIdAndStockSymbol(portfolioId, stockSymbol);
-            double currentPrice = marketDataService.fetchCurrentData(stockSymbol).path("Global Quote")
-                    .path("05. price").asDouble();
-            double stockMarketValue = currentStock.getQuantity() * currentPrice;
-
-            double totalPortfolioValue = 0;
-            List<PortfolioStock> allStocksInPortfolio = findByPortfolioId(portfolioId);
-            for (PortfolioStock stock : allStocksInPortfolio) {
-                double stockPrice = marketDataService.fetchCurrentData(stock.getStockSymbol()).path("Global Quote")
-                        .path("05. price").asDouble();
-                totalPortfolioValue += stock.getQuantity() * stockPrice;
-            }
-            double weight = stockMarketValue / totalPortfolioValue;
-            stockWeightResult.put(stockSymbol, weight);
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating stock weight service: " + e.getMessage(), e);
-        }
-        return stockWeightResult;
+        return calculateStockWeightAsync(portfolioId, stockSymbol).block();
     }
 
     @Override
     public Map<String, Double> calculateAnnualisedReturn(Integer portfolioStockId, String stockSymbol) {
-        Map<String, Double> annualisedReturnResult = new HashMap<>();
-        try {
-            PortfolioStock stock = portfolioStockRepository
-                    .findByPortfolioPortfolioIdAndStockStockSymbol(portfolioStockId, stockSymbol).orElse(null);
-            if (stock == null) {
-                throw new IllegalArgumentException("PortfolioStock not found for ID: " + portfolioStockId);
-            }
-            double currentPrice = marketDataService.fetchCurrentData(stock.getStock().getStockSymbol())
-                    .path("Global Quote")
-                    .path("05. close price").asDouble();
-            double buyPrice = stock.getBuyPrice();
-            long days = getDaysHeld(portfolioStockId);
+        return calculateAnnualisedReturnAsync(portfolioStockId, stockSymbol).block();
+    }
 
-            double annualisedReturn = ((Math.pow((currentPrice / buyPrice), (365.0 / days))) - 1) * 100;
+    @Override
+    public Mono<Map<String, Double>> calculateWeightedStockReturnAsync(Integer portfolioId, String stockSymbol) {
+        return fromRepository(() -> findByPortfolioIdAndStockSymbol(portfolioId, stockSymbol))
+                .zipWith(marketDataService.fetchCurrentDataAsync(stockSymbol), (stock, quote) -> {
+                    Map<String, Double> weightedReturns = new HashMap<>();
+                    double totalReturn = 0;
+                    int totalQuantity = stock.getQuantity();
+                    double currentPrice = quote.path("Global Quote").path("05. price").asDouble();
+                    double buyPrice = stock.getBuyPrice();
+                    double individualReturn = ((currentPrice - buyPrice) / buyPrice) * 100;
+                    totalReturn += (double) stock.getQuantity() / totalQuantity * individualReturn;
+
+                    weightedReturns.put("weightedReturn", totalReturn);
+                    return weightedReturns;
+                })
+                .onErrorMap(e -> new RuntimeException(
+                        "Error calculating weighted stock return service: " + e.getMessage(), e));
+    }
 
-            annualisedReturnResult.put("annualisedReturn", annualisedReturn);
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating annualised return service: " + e.getMessage(), e);
-        }
-        return annualisedReturnResult;
+    @Override
+    public Mono<Map<String, Double>> calculateStockWeightAsync(Integer portfolioId, String stockSymbol) {
+        return valuePortfolioAsync(portfolioId)
+                .map(valuation -> {
+                    int position = valuation.indexOf(stockSymbol);
+                    if (position < 0) {
+                        throw new EntityNotFoundException(
+                                "Stock " + stockSymbol + "not found in Portfolio id" + portfolioId);
+                    }
+                    Map<String, Double> stockWeightResult = new HashMap<>();
+                    stockWeightResult.put(stockSymbol, valuation.weight(position));
+                    return stockWeightResult;
+                })
+                .onErrorMap(e -> new RuntimeException("Error calculating stock weight service: " + e.getMessage(), e));
+    }
+
+    @Override
+    public Mono<Map<String, Double>> calculateAnnualisedReturnAsync(Integer portfolioStockId, String stockSymbol) {
+        Mono<PortfolioStock> holding = fromRepository(() -> portfolioStockRepository
+                .findByPortfolioPortfolioIdAndStockStockSymbol(portfolioStockId, stockSymbol)
+                .orElseThrow(() -> new IllegalArgumentException("PortfolioStock not found for ID: " + portfolioStockId)));
+        Mono<Long> daysHeld = fromRepository(() -> getDaysHeld(portfolioStockId));
+        return Mono.zip(holding, daysHeld)
+                .flatMap(held -> marketDataService.fetchCurrentDataAsync(held.getT1().getStock().getStockSymbol())
+                        .map(quote -> {
+                            Map<String, Double> annualisedReturnResult = new HashMap<>();
+                            double currentPrice = quote.path("Global Quote").path("05. close price").asDouble();
+                            double buyPrice = held.getT1().getBuyPrice();
+                            long days = held.getT2();
+
+                            double annualisedReturn = ((Math.pow((currentPrice / buyPrice), (365.0 / days))) - 1) * 100;
+
+                            annualisedReturnResult.put("annualisedReturn", annualisedReturn);
+                            return annualisedReturnResult;
+                        }))
+                .onErrorMap(e -> new RuntimeException("Error calculating annualised return service: " + e.getMessage(), e));
     }
 
     @Override
     public Map<String, Map<String, Double>> calculateStockReturnsForPortfolio(Integer portfolioId) {
         try {
-            List<PortfolioStock> allStocksInPortfolio = findByPortfolioId(portfolioId);
-
-            // 1. Calculate the total buy price and total quantity for each unique stock
-            Map<String, Double> totalBuyPrices = new HashMap<>();
-            Map<String, Double> totalQuantities = new HashMap<>();
-
-            for (PortfolioStock stock : allStocksInPortfolio) {
-                String stockSymbol = stock.getStock().getStockSymbol();
-                totalBuyPrices.merge(stockSymbol, (double) (stock.getBuyPrice() * stock.getQuantity()), Double::sum);
-                totalQuantities.merge(stockSymbol, (double) stock.getQuantity(), Double::sum);
-            }
-
-            // 2. Fetch the current stock prices and calculate the actual value and
-            // percentage return
-            Map<String, Double> currentPrices = new HashMap<>();
+            PortfolioValuationSnapshot valuation = pricingContext.getValuation(portfolioId);
             Map<String, Map<String, Double>> returnsByStock = new HashMap<>();
 
-            for (String stockSymbol : totalBuyPrices.keySet()) {
-                double currentPrice = marketDataService.fetchCurrentData(stockSymbol)
-                        .path("Global Quote")
-                        .path("05. price").asDouble();
-                currentPrices.put(stockSymbol, currentPrice);
-
-                double aggregatedBuyPrice = totalBuyPrices.get(stockSymbol);
-                double aggregatedQuantity = totalQuantities.get(stockSymbol);
-                double aggregatedCurrentValue = currentPrice * aggregatedQuantity;
-
-                double actualValue = aggregatedCurrentValue - aggregatedBuyPrice;
+            for (int i = 0; i < valuation.size(); i++) {
+                double aggregatedBuyPrice = valuation.costBasis(i);
+                double actualValue = valuation.marketValue(i) - aggregatedBuyPrice;
                 double percentageReturn = (actualValue / aggregatedBuyPrice) * 100;
 
                 // Rounding
@@ -401,7 +401,7 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
                 returnDetails.put("actualValue", bdActualValue.doubleValue());
                 returnDetails.put("percentage", bdPercentageReturn.doubleValue());
 
-                returnsByStock.put(stockSymbol, returnDetails);
+                returnsByStock.put(valuation.symbol(i), returnDetails);
             }
 
             return returnsByStock;
@@ -413,22 +413,9 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
     @Override
     public Map<String, Double> calculateOverallPortfolioReturns(Integer portfolioId) {
         try {
-            Map<String, Map<String, Double>> stockReturns = calculateStockReturnsForPortfolio(portfolioId);
-            double totalPurchaseValue = 0.0;
-            double totalActualReturn = 0.0;
-
-            for (Map.Entry<String, Map<String, Double>> entry : stockReturns.entrySet()) {
-                double actualValueForStock = entry.getValue().get("actualValue");
-
-                PortfolioStock stock = findByPortfolioIdAndStockSymbol(portfolioId, entry.getKey());
-                double purchaseValue = stock.getBuyPrice() * stock.getQuantity();
-
-                totalPurchaseValue += purchaseValue;
-                totalActualReturn += actualValueForStock;
-            }
-
-            double totalCurrentValue = totalActualReturn + totalPurchaseValue;
-            double overallReturn = totalCurrentValue - totalPurchaseValue;
+            PortfolioValuationSnapshot valuation = pricingContext.getValuation(portfolioId);
+            double totalPurchaseValue = valuation.getTotalCostBasis();
+            double overallReturn = valuation.getTotalMarketValue() - totalPurchaseValue;
             double percentageReturn = (overallReturn / totalPurchaseValue) * 100;
 
             BigDecimal bdPercentageReturn = new BigDecimal(percentageReturn).setScale(2, RoundingMode.HALF_UP);
@@ -438,7 +425,6 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
             returns.put("percentage", bdPercentageReturn.doubleValue());
             returns.put("overalReturn", bdOverallReturn.doubleValue());
             return returns;
-
         } catch (Exception e) {
             throw new RuntimeException("Error calculating overall portfolio returns: " + e.getMessage(), e);
         }
@@ -446,53 +432,49 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
 
     @Override
     public PortfolioGroupingSummary calculateTotalPortfolioValueByGroup(Integer portfolioId, String groupBy) {
-        try {
-            List<PortfolioStock> allStocksInPortfolio = findByPortfolioId(portfolioId);
-            Double portfolioRemainingBalance = portfolioService.findById(portfolioId).get().getRemainingCapital();
-            Map<String, PortfolioGroupingSummary.StockInfo> portfolioStocksInfo = new HashMap<>();
-
-            for (PortfolioStock stock : allStocksInPortfolio) {
-                String stockSymbol = stock.getStock().getStockSymbol();
-                if (!portfolioStocksInfo.containsKey(stockSymbol)) {
-                    double currentPrice = marketDataService.fetchCurrentData(stockSymbol)
-                            .path("Global Quote").path("05. price").asDouble();
-                    Stock stockInformation = stockService.findBySymbol(stockSymbol).get();
-                    portfolioStocksInfo.put(stockSymbol,
-                            new PortfolioGroupingSummary.StockInfo(stock.getQuantity(), currentPrice,
-                                    stockInformation.getSector(), stockInformation.getIndustry(),
-                                    stockInformation.getExchange(), stockInformation.getCountry()));
-                }
-            }
+        return calculateTotalPortfolioValueByGroupAsync(portfolioId, groupBy).block();
+    }
+
+    @Override
+    public Mono<PortfolioGroupingSummary> calculateTotalPortfolioValueByGroupAsync(Integer portfolioId,
+            String groupBy) {
+        return Mono.zip(valuePortfolioAsync(portfolioId),
+                fromRepository(() -> portfolioService.findById(portfolioId).get().getRemainingCapital()))
+                .map(portfolio -> summariseByGroup(portfolio.getT1(), portfolio.getT2(), groupBy))
+                .onErrorMap(e -> new RuntimeException(
+                        "Error calculating total portfolio value by group: " + e.getMessage(), e));
+    }
 
-            double totalPortfolioStockValue = allStocksInPortfolio.stream()
-                    .mapToDouble(stock -> stock.getQuantity()
-                            * portfolioStocksInfo.get(stock.getStock().getStockSymbol()).getCurrentPrice())
-                    .sum();
-            double totalPortfolioValue = totalPortfolioStockValue + portfolioRemainingBalance;
+    // Stock details come with the holdings, so no further database reads are needed
+    private PortfolioGroupingSummary summariseByGroup(PortfolioValuationSnapshot valuation,
+            Double portfolioRemainingBalance, String groupBy) {
+        Function<Stock, String> groupingFunction = getGroupingFunction(groupBy);
+        Map<String, PortfolioGroupingSummary.StockInfo> portfolioStocksInfo = new HashMap<>();
+        Map<String, Double> valueByGroup = new HashMap<>();
 
-            Function<PortfolioStock, String> groupingFunction = getGroupingFunction(groupBy);
-            Map<String, Double> valueByGroup = allStocksInPortfolio.stream()
-                    .collect(Collectors.groupingBy(
-                            groupingFunction,
-                            Collectors.summingDouble(stock -> stock.getQuantity()
-                                    * portfolioStocksInfo.get(stock.getStock().getStockSymbol()).getCurrentPrice())));
+        for (int i = 0; i < valuation.size(); i++) {
+            Stock stockInformation = valuation.stock(i);
+            portfolioStocksInfo.put(valuation.symbol(i),
+                    new PortfolioGroupingSummary.StockInfo(valuation.quantity(i), valuation.price(i),
+                            stockInformation.getSector(), stockInformation.getIndustry(),
+                            stockInformation.getExchange(), stockInformation.getCountry()));
+            valueByGroup.merge(groupingFunction.apply(stockInformation), valuation.marketValue(i), Double::sum);
+        }
 
-            PortfolioGroupingSummary summary = new PortfolioGroupingSummary();
-            summary.setTotalPortfolioValue(totalPortfolioValue);
-            summary.setPortfolioStocks(portfolioStocksInfo);
+        double totalPortfolioValue = valuation.getTotalMarketValue() + portfolioRemainingBalance;
 
-            Map<String, PortfolioGroupingSummary.Allocation> allocations = new HashMap<>();
-            valueByGroup.forEach((key, value) -> allocations.put(key,
-                    new PortfolioGroupingSummary.Allocation(value, (value / totalPortfolioValue) * 100)));
-            allocations.put("CASH", new PortfolioGroupingSummary.Allocation(portfolioRemainingBalance,
-                    (portfolioRemainingBalance / totalPortfolioValue) * 100));
-            summary.setAllocations(allocations);
+        PortfolioGroupingSummary summary = new PortfolioGroupingSummary();
+        summary.setTotalPortfolioValue(totalPortfolioValue);
+        summary.setPortfolioStocks(portfolioStocksInfo);
 
-            return summary;
+        Map<String, PortfolioGroupingSummary.Allocation> allocations = new HashMap<>();
+        valueByGroup.forEach((key, value) -> allocations.put(key,
+                new PortfolioGroupingSummary.Allocation(value, (value / totalPortfolioValue) * 100)));
+        allocations.put("CASH", new PortfolioGroupingSummary.Allocation(portfolioRemainingBalance,
+                (portfolioRemainingBalance / totalPortfolioValue) * 100));
+        summary.setAllocations(allocations);
 
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating total portfolio value by group: " + e.getMessage(), e);
-        }
+        return summary;
     }
 
     @Override
@@ -515,10 +497,10 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
     public Map<String, Object> getPortfolioSummary(Integer portfolioId) {
         Map<String, Object> response = new HashMap<>();
         try {
-            Portfolio portfolio = portfolioService.findById(portfolioId)
+            portfolioService.findById(portfolioId)
                     .orElseThrow(() -> new EntityNotFoundException("Portfolio not found"));
-            List<PortfolioStock> portfolioStocks = portfolio.getPortfolioStocks();
-            if (portfolioStocks.isEmpty()) {
+            // The analytics below share the valuation computed here
+            if (pricingContext.getValuation(portfolioId).isEmpty()) {
                 response.put("totalPortfolioValue", 0.00);
                 response.put("stockReturns", new HashMap<>());
                 response.put("overallReturns", new HashMap<>());
@@ -538,16 +520,28 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
 
     }
 
-    private Function<PortfolioStock, String> getGroupingFunction(String groupBy) {
+    @Override
+    public String getPortfolioSummaryVersion(Integer portfolioId) {
+        try {
+            portfolioService.findById(portfolioId)
+                    .orElseThrow(() -> new EntityNotFoundException("Portfolio not found"));
+            // Memoized for the request, so the summary reuses this valuation
+            return pricingContext.getValuation(portfolioId).getVersion();
+        } catch (Exception e) {
+            throw new RuntimeException("Error getting portfolio summary version service: " + e.getMessage(), e);
+        }
+    }
+
+    private Function<Stock, String> getGroupingFunction(String groupBy) {
         switch (groupBy.toLowerCase()) {
             case "sector":
-                return stock -> stock.getStock().getSector();
+                return Stock::getSector;
             case "industry":
-                return stock -> stock.getStock().getIndustry();
+                return Stock::getIndustry;
             case "exchange":
-                return stock -> stock.getStock().getExchange();
+                return Stock::getExchange;
             case "country":
-                return stock -> stock.getStock().getCountry();
+                return Stock::getCountry;
             default:
                 throw new IllegalArgumentException("Unsupported groupBy value: " + groupBy);
         }
@@ -556,18 +550,14 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
     @Override
     public Map<String, Double> calculatePortfolioMonthlyVolatility(Integer portfolioId) {
         Map<String, Double> stockVolatilities = new HashMap<>();
-        List<PortfolioStock> allStocksInPortfolio = findByPortfolioId(portfolioId);
-        double portfolioVolatility = 0.0;
-
-        for (PortfolioStock stock : allStocksInPortfolio) {
-            String stockSymbol = stock.getStockSymbol();
-            Map<String, Double> stockMonthlyVolatility = stockService.calculateMonthlyVolatility(stockSymbol);
-
-            Double stockMonthlyVolatilityData = stockMonthlyVolatility.get(stockSymbol);
-            Map<String, Double> stockWeight = calculateStockWeight(portfolioId, stockSymbol);
-            Double stockWeightData = stockWeight.get(stockSymbol);
-            portfolioVolatility += stockWeightData * stockMonthlyVolatilityData;
-        }
+        PortfolioValuationSnapshot valuation = pricingContext.getValuation(portfolioId);
+        String[] symbols = new String[valuation.size()];
+        double[] weights = new double[valuation.size()];
+        for (int i = 0; i < valuation.size(); i++) {
+            symbols[i] = valuation.symbol(i);
+            weights[i] = valuation.weight(i);
+        }
+        double portfolioVolatility = riskEngine.portfolioVolatility(symbols, weights);
         stockVolatilities.put("portfolioVolatility", portfolioVolatility);
         return stockVolatilities;
     }
@@ -586,38 +576,25 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
 
     @Override
     public double getTotalPortfolioValue(Integer portfolioId) {
-        List<PortfolioStock> allStocksInPortfolio = findByPortfolioId(portfolioId);
-
-        // Fetch the current prices of unique stocks only once to minimize API calls
-        Map<String, Double> currentPrices = new HashMap<>();
-        for (PortfolioStock stock : allStocksInPortfolio) {
-            String stockSymbol = stock.getStock().getStockSymbol();
-            if (!currentPrices.containsKey(stockSymbol)) {
-                double currentPrice = marketDataService.fetchCurrentData(stockSymbol)
-                        .path("Global Quote").path("05. price").asDouble();
-                currentPrices.put(stockSymbol, currentPrice);
-            }
-        }
-        // Calculate total portfolio value
-        double totalPortfolioValue = allStocksInPortfolio.stream()
-                .mapToDouble(stock -> stock.getQuantity() * currentPrices.get(stock.getStock().getStockSymbol()))
-                .sum();
+        return pricingContext.getValuation(portfolioId).getTotalMarketValue();
+    }
 
-        return totalPortfolioValue;
+    // Values the portfolio at current prices with a single quote lookup per held symbol
+    private Mono<PortfolioValuationSnapshot> valuePortfolioAsync(Integer portfolioId) {
+        return fromRepository(() -> findByPortfolioId(portfolioId))
+                .flatMap(holdings -> {
+                    Set<String> stockSymbols = holdings.stream()
+                            .map(PortfolioStock::getStockSymbol)
+                            .collect(Collectors.toSet());
+                    return marketDataService.fetchCurrentPricesAsync(stockSymbols)
+                            .map(currentPrices -> PortfolioValuationSnapshot.of(holdings, currentPrices));
+                });
     }
 
-    private Map<String, Double> fetchCurrentPricesForPortfolio(Integer portfolioId) {
-        List<PortfolioStock> allStocksInPortfolio = findByPortfolioId(portfolioId);
-        Map<String, Double> stockPrices = new HashMap<>();
-        for (PortfolioStock stock : allStocksInPortfolio) {
-            String stockSymbol = stock.getStockSymbol();
-            if (!stockPrices.containsKey(stockSymbol)) {
-                double currentPrice = marketDataService.fetchCurrentData(stockSymbol).path("Global Quote")
-                        .path("05. price").asDouble();
-                stockPrices.put(stockSymbol, currentPrice);
-            }
-        }
-        return stockPrices;
+    // Repository calls block on JDBC, so they run on the bounded elastic scheduler
+    // instead of holding the request thread
+    private static <T> Mono<T> fromRepository(Callable<T> query) {
+        return Mono.fromCallable(query).subscribeOn(Schedulers.boundedElastic());
     }
 
     @Override
@@ -811,6 +788,7 @@ public class PortfolioStockServiceImpl implements PortfolioStockService {
             }
             portfolioStockRepository.save(portfolioStock);
         }
+        eventPublisher.publishEvent(new PositionChangedEvent(portfolio.getPortfolioId(), stockSymbol));
 
         String action = String.format(
                 "User successfully %s stock %s in Portfolio #%d - %s with new price: %.2f and quantity: %d on %s",
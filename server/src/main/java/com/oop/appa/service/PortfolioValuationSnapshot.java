@@ -0,0 +1,159 @@
+package com.oop.appa.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oop.appa.entity.PortfolioStock;
+import com.oop.appa.entity.Stock;
+
+/**
+ * Immutable valuation of a portfolio at one set of current prices. Holdings of the
+ * same symbol are merged into one position, and the quantities, cost bases, prices,
+ * market values and weights are held in parallel arrays indexed by position, so the
+ * portfolio analytics all read the same figures without pricing the portfolio again.
+ * Weights are relative to the market value of the positions, cash excluded.
+ */
+public final class PortfolioValuationSnapshot {
+    private final String[] symbols;
+    private final Stock[] stocks;
+    private final int[] quantities;
+    private final double[] costBases;
+    private final double[] prices;
+    private final double[] marketValues;
+    private final double[] weights;
+    private final double totalCostBasis;
+    private final double totalMarketValue;
+    private final Map<String, Integer> positions;
+
+    private PortfolioValuationSnapshot(String[] symbols, Stock[] stocks, int[] quantities, double[] costBases,
+            double[] prices, Map<String, Integer> positions) {
+        int size = symbols.length;
+        this.symbols = symbols;
+        this.stocks = stocks;
+        this.quantities = quantities;
+        this.costBases = costBases;
+        this.prices = prices;
+        this.positions = positions;
+        this.marketValues = new double[size];
+        this.weights = new double[size];
+        double costBasisSum = 0;
+        double marketValueSum = 0;
+        for (int i = 0; i < size; i++) {
+            marketValues[i] = quantities[i] * prices[i];
+            costBasisSum += costBases[i];
+            marketValueSum += marketValues[i];
+        }
+        for (int i = 0; i < size; i++) {
+            weights[i] = marketValues[i] / marketValueSum;
+        }
+        this.totalCostBasis = costBasisSum;
+        this.totalMarketValue = marketValueSum;
+    }
+
+    /**
+     * Values the holdings at the given prices, which must cover every held symbol.
+     */
+    public static PortfolioValuationSnapshot of(List<PortfolioStock> holdings, Map<String, Double> currentPrices) {
+        Map<String, Integer> positions = new HashMap<>();
+        String[] symbols = new String[holdings.size()];
+        Stock[] stocks = new Stock[holdings.size()];
+        int[] quantities = new int[holdings.size()];
+        double[] costBases = new double[holdings.size()];
+        double[] prices = new double[holdings.size()];
+        int size = 0;
+        for (PortfolioStock holding : holdings) {
+            String symbol = holding.getStockSymbol();
+            Integer position = positions.get(symbol);
+            if (position == null) {
+                Double price = currentPrices.get(symbol);
+                if (price == null) {
+                    throw new IllegalArgumentException("No current price for " + symbol);
+                }
+                position = size++;
+                positions.put(symbol, position);
+                symbols[position] = symbol;
+                stocks[position] = holding.getStock();
+                prices[position] = price;
+            }
+            quantities[position] += holding.getQuantity();
+            costBases[position] += (double) holding.getBuyPrice() * holding.getQuantity();
+        }
+        if (size < holdings.size()) {
+            symbols = Arrays.copyOf(symbols, size);
+            stocks = Arrays.copyOf(stocks, size);
+            quantities = Arrays.copyOf(quantities, size);
+            costBases = Arrays.copyOf(costBases, size);
+            prices = Arrays.copyOf(prices, size);
+        }
+        return new PortfolioValuationSnapshot(symbols, stocks, quantities, costBases, prices, positions);
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    public boolean isEmpty() {
+        return symbols.length == 0;
+    }
+
+    /**
+     * Position of the given symbol, or -1 if it is not held.
+     */
+    public int indexOf(String symbol) {
+        Integer position = positions.get(symbol);
+        return position == null ? -1 : position;
+    }
+
+    public String symbol(int position) {
+        return symbols[position];
+    }
+
+    public Stock stock(int position) {
+        return stocks[position];
+    }
+
+    public int quantity(int position) {
+        return quantities[position];
+    }
+
+    public double costBasis(int position) {
+        return costBases[position];
+    }
+
+    public double price(int position) {
+        return prices[position];
+    }
+
+    public double marketValue(int position) {
+        return marketValues[position];
+    }
+
+    public double weight(int position) {
+        return weights[position];
+    }
+
+    public double getTotalCostBasis() {
+        return totalCostBasis;
+    }
+
+    public double getTotalMarketValue() {
+        return totalMarketValue;
+    }
+
+    /**
+     * Identifies the positions and prices valued here. Two snapshots with the same
+     * version give the same figures, so responses derived from a valuation can be
+     * revalidated against it.
+     */
+    public String getVersion() {
+        StringBuilder version = new StringBuilder();
+        for (int i = 0; i < symbols.length; i++) {
+            version.append(symbols[i]).append(':').append(quantities[i]).append(':')
+                    .append(Double.doubleToLongBits(costBases[i])).append(':')
+                    .append(Double.doubleToLongBits(prices[i])).append(';');
+        }
+        return version.toString();
+    }
+}
@@ -0,0 +1,290 @@
+package com.oop.appa.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local daily price history per symbol, stored as fixed-width binary column files
+ * (epoch day as int, open/high/low/close as double and volume as long) that are
+ * memory-mapped for reads. The first read of a symbol downloads the full
+ * TIME_SERIES_DAILY history once; later reads only pull the compact series and
+ * append the days that are missing. A revised bar for the latest stored day is
+ * rewritten in place.
+ */
+@Component
+public class PriceHistoryStore {
+    // The compact series holds the latest 100 trading days
+    private static final long COMPACT_CALENDAR_DAYS = 140;
+    private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9][A-Z0-9.\\-]{0,15}");
+
+    private enum Column {
+        DAY(Integer.BYTES),
+        OPEN(Double.BYTES),
+        HIGH(Double.BYTES),
+        LOW(Double.BYTES),
+        CLOSE(Double.BYTES),
+        VOLUME(Long.BYTES);
+
+        private final int width;
+
+        Column(int width) {
+            this.width = width;
+        }
+
+        String fileName() {
+            return name().toLowerCase() + ".col";
+        }
+    }
+
+    private final MarketDataService marketDataService;
+    private final JsonStreamProcessor jsonStreamProcessor = new JsonStreamProcessor();
+    private final Path directory;
+    private final Duration syncInterval;
+    private final Map<String, SymbolHistory> histories = new ConcurrentHashMap<>();
+
+    public PriceHistoryStore(MarketDataService marketDataService,
+            @Value("${marketdata.history.directory:data/price-history}") String directory,
+            @Value("${marketdata.history.sync-interval:15m}") Duration syncInterval) {
+        this.marketDataService = marketDataService;
+        this.directory = Paths.get(directory);
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Returns the daily bars of a symbol, syncing the local history with the
+     * upstream first if it is missing recent trading days.
+     */
+    public MappedPriceSeries getDailySeries(String symbol) {
+        return getDailySeries(symbol, UpstreamPriority.CHART_HISTORY);
+    }
+
+    // The priority the sync queues at for the upstream request budget
+    public MappedPriceSeries getDailySeries(String symbol, UpstreamPriority priority) {
+        SymbolHistory history = history(symbol);
+        synchronized (history) {
+            try {
+                sync(history, priority);
+            } catch (RuntimeException e) {
+                // Serve the local history when the upstream cannot be reached
+                if (history.series.isEmpty()) {
+                    throw e;
+                }
+            }
+        }
+        return history.series;
+    }
+
+    /**
+     * Opens the local history of a symbol without syncing it, so the first request
+     * for the symbol does not pay for opening the files. A history due for a sync
+     * is still synced by that request.
+     */
+    public void preload(String symbol) {
+        history(symbol);
+    }
+
+    // Symbols whose history has been opened since startup and holds bars, so a
+    // symbol the upstream does not know is not preloaded again after a restart
+    Set<String> getLoadedSymbols() {
+        Set<String> symbols = new TreeSet<>();
+        for (SymbolHistory history : histories.values()) {
+            if (!history.series.isEmpty()) {
+                symbols.add(history.symbol);
+            }
+        }
+        return symbols;
+    }
+
+    // Every caller of a symbol shares one history, so its syncs are serialized on
+    // it and a failed sync is not retried before the sync interval passed
+    private SymbolHistory history(String symbol) {
+        String key = symbol.trim().toUpperCase(Locale.ROOT);
+        // The symbol names a directory of the store, so it must not be able to leave it
+        if (!SYMBOL.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid stock symbol: " + symbol);
+        }
+        return histories.computeIfAbsent(key, this::load);
+    }
+
+    private SymbolHistory load(String symbol) {
+        SymbolHistory history = new SymbolHistory(symbol, directory.resolve(symbol));
+        try {
+            history.series = map(history);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading price history for " + symbol, e);
+        }
+        return history;
+    }
+
+    /**
+     * Whether reading the symbol would sync it with the upstream, which costs one
+     * upstream call.
+     */
+    public boolean needsSync(String symbol) {
+        SymbolHistory history = history(symbol);
+        synchronized (history) {
+            return isSyncDue(history, Instant.now());
+        }
+    }
+
+    private boolean isSyncDue(SymbolHistory history, Instant now) {
+        MappedPriceSeries series = history.series;
+        int count = series.size();
+        LocalDate lastCompletedTradingDay = TradingCalendar.lastCompletedTradingDay(ZonedDateTime.now());
+        if (count > 0 && !series.date(count - 1).isBefore(lastCompletedTradingDay)) {
+            return false;
+        }
+        return history.lastSyncAttempt == null || !now.isBefore(history.lastSyncAttempt.plus(syncInterval));
+    }
+
+    private void sync(SymbolHistory history, UpstreamPriority priority) {
+        Instant now = Instant.now();
+        if (!isSyncDue(history, now)) {
+            return;
+        }
+        history.lastSyncAttempt = now;
+        MappedPriceSeries series = history.series;
+        int count = series.size();
+        LocalDate lastStored = count == 0 ? null : series.date(count - 1);
+
+        boolean full = lastStored == null
+                || ChronoUnit.DAYS.between(lastStored, LocalDate.now(TradingCalendar.MARKET_ZONE)) > COMPACT_CALENDAR_DAYS;
+        // Only the latest stored day and the days after it are needed from the response
+        DailyBars bars;
+        try (InputStream body = marketDataService.fetchDailyDataStream(history.symbol, full ? "full" : "compact",
+                priority)) {
+            bars = jsonStreamProcessor.processJsonStream(body, lastStored);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading daily data for " + history.symbol, e);
+        }
+
+        // Keep only a revision of the latest stored day and the days after it
+        int lastStoredDay = lastStored == null ? Integer.MIN_VALUE : (int) lastStored.toEpochDay();
+        int from = 0;
+        while (from < bars.size() && bars.epochDay(from) < lastStoredDay) {
+            from++;
+        }
+        int row = count;
+        if (from < bars.size() && bars.epochDay(from) == lastStoredDay) {
+            if (bars.close(from) == series.close(count - 1) && bars.volume(from) == series.volume(count - 1)) {
+                from++;
+            } else {
+                row = count - 1;
+            }
+        }
+        if (from == bars.size()) {
+            return;
+        }
+        try {
+            write(history, bars, from, row);
+            history.series = map(history);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing price history for " + history.symbol, e);
+        }
+    }
+
+    // Writes bars from the given index onwards, starting at the given row of the
+    // column files, and drops any rows after them
+    private void write(SymbolHistory history, DailyBars bars, int from, int row) throws IOException {
+        Files.createDirectories(history.directory);
+        int rows = bars.size() - from;
+        for (Column column : Column.values()) {
+            ByteBuffer buffer = ByteBuffer.allocate(rows * column.width);
+            for (int i = from; i < bars.size(); i++) {
+                switch (column) {
+                    case DAY:
+                        buffer.putInt(bars.epochDay(i));
+                        break;
+                    case OPEN:
+                        buffer.putDouble(bars.open(i));
+                        break;
+                    case HIGH:
+                        buffer.putDouble(bars.high(i));
+                        break;
+                    case LOW:
+                        buffer.putDouble(bars.low(i));
+                        break;
+                    case CLOSE:
+                        buffer.putDouble(bars.close(i));
+                        break;
+                    case VOLUME:
+                        buffer.putLong(bars.volume(i));
+                        break;
+                }
+            }
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(history.directory.resolve(column.fileName()),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long position = (long) row * column.width;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                channel.truncate((long) (row + rows) * column.width);
+            }
+        }
+    }
+
+    // A write interrupted half way leaves some columns longer than others, so only
+    // the rows present in every column are mapped
+    private MappedPriceSeries map(SymbolHistory history) throws IOException {
+        if (!Files.exists(history.directory)) {
+            return MappedPriceSeries.EMPTY;
+        }
+        long rows = Long.MAX_VALUE;
+        for (Column column : Column.values()) {
+            Path file = history.directory.resolve(column.fileName());
+            rows = Math.min(rows, Files.exists(file) ? Files.size(file) / column.width : 0);
+        }
+        if (rows == 0) {
+            return MappedPriceSeries.EMPTY;
+        }
+        return new MappedPriceSeries(
+                map(history, Column.DAY, rows).asIntBuffer(),
+                map(history, Column.OPEN, rows).asDoubleBuffer(),
+                map(history, Column.HIGH, rows).asDoubleBuffer(),
+                map(history, Column.LOW, rows).asDoubleBuffer(),
+                map(history, Column.CLOSE, rows).asDoubleBuffer(),
+                map(history, Column.VOLUME, rows).asLongBuffer());
+    }
+
+    private MappedByteBuffer map(SymbolHistory history, Column column, long rows) throws IOException {
+        try (FileChannel channel = FileChannel.open(history.directory.resolve(column.fileName()),
+                StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, rows * column.width);
+        }
+    }
+
+    private static class SymbolHistory {
+        private final String symbol;
+        private final Path directory;
+        private volatile MappedPriceSeries series = MappedPriceSeries.EMPTY;
+        private Instant lastSyncAttempt;
+
+        SymbolHistory(String symbol, Path directory) {
+            this.symbol = symbol;
+            this.directory = directory;
+        }
+    }
+}
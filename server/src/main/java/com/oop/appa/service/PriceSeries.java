@@ -0,0 +1,97 @@
+package com.oop.appa.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Dates and closing prices in two primitive arrays, oldest day first. This is what
+ * the analytics work on, the controllers turn it into JSON data points.
+ */
+public final class PriceSeries {
+    private final int[] epochDays;
+    private final double[] closes;
+
+    public PriceSeries(int[] epochDays, double[] closes) {
+        if (epochDays.length != closes.length) {
+            throw new IllegalArgumentException("Dates and closes differ in length");
+        }
+        this.epochDays = epochDays;
+        this.closes = closes;
+    }
+
+    /**
+     * Every daily close of the series.
+     */
+    public static PriceSeries daily(MappedPriceSeries dailySeries) {
+        int[] indices = new int[dailySeries.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        return of(dailySeries, indices);
+    }
+
+    /**
+     * The close of the last trading day of each month in the series. Alpha Vantage
+     * monthly bars are these same closes, so they are taken from the daily history.
+     */
+    public static PriceSeries monthEnds(MappedPriceSeries dailySeries) {
+        int[] indices = new int[dailySeries.size()];
+        int count = 0;
+        for (int i = 0; i < dailySeries.size(); i++) {
+            if (i == dailySeries.size() - 1
+                    || !YearMonth.from(dailySeries.date(i)).equals(YearMonth.from(dailySeries.date(i + 1)))) {
+                indices[count++] = i;
+            }
+        }
+        return of(dailySeries, Arrays.copyOf(indices, count));
+    }
+
+    /**
+     * Copies the closes at the given indices of a daily series.
+     */
+    public static PriceSeries of(MappedPriceSeries dailySeries, int[] indices) {
+        int[] epochDays = new int[indices.length];
+        double[] closes = new double[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            epochDays[i] = dailySeries.epochDay(indices[i]);
+            closes[i] = dailySeries.close(indices[i]);
+        }
+        return new PriceSeries(epochDays, closes);
+    }
+
+    public int size() {
+        return closes.length;
+    }
+
+    public boolean isEmpty() {
+        return closes.length == 0;
+    }
+
+    public int epochDay(int index) {
+        return epochDays[index];
+    }
+
+    public LocalDate date(int index) {
+        return LocalDate.ofEpochDay(epochDays[index]);
+    }
+
+    public double close(int index) {
+        return closes[index];
+    }
+
+    /**
+     * Simple returns between consecutive closes, one fewer than there are closes.
+     * Each is a close's change relative to the close before it, oldest first.
+     */
+    public double[] returns() {
+        if (closes.length < 2) {
+            return new double[0];
+        }
+        double[] returns = new double[closes.length - 1];
+        for (int i = 1; i < closes.length; i++) {
+            returns[i - 1] = (closes[i] - closes[i - 1]) / closes[i - 1];
+        }
+        return returns;
+    }
+}
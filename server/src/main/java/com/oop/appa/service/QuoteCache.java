@@ -0,0 +1,140 @@
+package com.oop.appa.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Caches GLOBAL_QUOTE responses per symbol. During US market hours an entry stays
+ * fresh for the configured TTL, outside market hours it stays fresh until the next
+ * open. A stale entry is still returned straight away while a single background
+ * refresh for that symbol replaces it at background priority, so a throttled
+ * upstream degrades to the last quote instead of failing the request. Loads are
+ * non-blocking, a refresh does not hold a thread while the upstream responds.
+ */
+@Component
+public class QuoteCache {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Duration marketHoursTtl;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public QuoteCache(@Value("${marketdata.quote-cache.market-hours-ttl:15s}") Duration marketHoursTtl) {
+        this.marketHoursTtl = marketHoursTtl;
+    }
+
+    public CompletableFuture<JsonNode> get(String symbol,
+            BiFunction<String, UpstreamPriority, CompletableFuture<JsonNode>> loader) {
+        Entry entry = entries.get(symbol);
+        if (entry != null) {
+            if (Instant.now().isBefore(entry.freshUntil)) {
+                hits.incrementAndGet();
+            } else {
+                staleHits.incrementAndGet();
+                refreshInBackground(symbol, loader);
+            }
+            return CompletableFuture.completedFuture(entry.value);
+        }
+        misses.incrementAndGet();
+        return load(symbol, loader, UpstreamPriority.INTERACTIVE_QUOTE);
+    }
+
+    /**
+     * Loads the quote at background priority unless a fresh entry is cached or a
+     * refresh of the symbol is already running. Returns whether a load was started.
+     */
+    public boolean refresh(String symbol, BiFunction<String, UpstreamPriority, CompletableFuture<JsonNode>> loader) {
+        Entry entry = entries.get(symbol);
+        if (entry != null && Instant.now().isBefore(entry.freshUntil)) {
+            return false;
+        }
+        return refreshInBackground(symbol, loader);
+    }
+
+    public void invalidate(String symbol) {
+        entries.remove(symbol);
+    }
+
+    // Cached quotes with the time each stays fresh until, for the warm start snapshot
+    void forEach(QuoteVisitor visitor) {
+        entries.forEach((symbol, entry) -> visitor.visit(symbol, entry.value, entry.freshUntil));
+    }
+
+    // A quote loaded since the snapshot was taken is newer, so it is kept
+    void restore(String symbol, JsonNode value, Instant freshUntil) {
+        entries.putIfAbsent(symbol, new Entry(value, freshUntil));
+    }
+
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new HashMap<>();
+        statistics.put("quoteCacheHits", hits.get());
+        statistics.put("quoteCacheStaleHits", staleHits.get());
+        statistics.put("quoteCacheMisses", misses.get());
+        statistics.put("quoteCacheSize", (long) entries.size());
+        return statistics;
+    }
+
+    private CompletableFuture<JsonNode> load(String symbol,
+            BiFunction<String, UpstreamPriority, CompletableFuture<JsonNode>> loader, UpstreamPriority priority) {
+        return loader.apply(symbol, priority).thenApply(value -> {
+            // A stale fallback from a failed call is cached as already expired, so the
+            // next read serves it and retries the upstream
+            Instant freshUntil = value.path("stale").asBoolean() ? Instant.EPOCH : freshUntil(Instant.now());
+            entries.put(symbol, new Entry(value, freshUntil));
+            return value;
+        });
+    }
+
+    // Keeps serving the stale quote if the refresh fails, the next read retries it
+    private boolean refreshInBackground(String symbol,
+            BiFunction<String, UpstreamPriority, CompletableFuture<JsonNode>> loader) {
+        if (!refreshing.add(symbol)) {
+            return false;
+        }
+        try {
+            load(symbol, loader, UpstreamPriority.BACKGROUND).whenComplete((value, e) -> refreshing.remove(symbol));
+        } catch (RuntimeException e) {
+            refreshing.remove(symbol);
+        }
+        return true;
+    }
+
+    // Quotes only move while the market is open, so outside trading hours an entry
+    // is kept until the next open
+    Instant freshUntil(Instant loadedAt) {
+        ZonedDateTime marketTime = loadedAt.atZone(TradingCalendar.MARKET_ZONE);
+        if (TradingCalendar.isOpen(marketTime)) {
+            return loadedAt.plus(marketHoursTtl);
+        }
+        return TradingCalendar.nextOpen(marketTime).toInstant();
+    }
+
+    interface QuoteVisitor {
+        void visit(String symbol, JsonNode value, Instant freshUntil);
+    }
+
+    private static class Entry {
+        private final JsonNode value;
+        private final Instant freshUntil;
+
+        Entry(JsonNode value, Instant freshUntil) {
+            this.value = value;
+            this.freshUntil = freshUntil;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.oop.appa.service;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.oop.appa.dao.PortfolioStockRepository;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps the quotes and daily histories of every held symbol warm, so the first
+ * dashboard load after they go stale does not wait on the upstream. Each run walks
+ * on through the held symbols, most held first, and starts over once every symbol
+ * has been visited. A run only spends the upstream tokens that are available beyond
+ * a reserve kept for user requests, so it never makes them queue.
+ */
+@Component
+@ConditionalOnProperty(name = "marketdata.prewarm.enabled", havingValue = "true", matchIfMissing = true)
+public class QuotePrewarmer {
+    private final PortfolioStockRepository portfolioStockRepository;
+    private final MarketDataService marketDataService;
+    private final PriceHistoryStore priceHistoryStore;
+    private final UpstreamRateLimiter rateLimiter;
+    private final TaskScheduler taskScheduler;
+    private final Duration interval;
+    private final int reservedTokens;
+
+    private List<String> symbols = List.of();
+    private int next;
+
+    public QuotePrewarmer(PortfolioStockRepository portfolioStockRepository, MarketDataService marketDataService,
+            PriceHistoryStore priceHistoryStore, UpstreamRateLimiter rateLimiter, TaskScheduler taskScheduler,
+            @Value("${marketdata.prewarm.interval:30s}") Duration interval,
+            @Value("${marketdata.prewarm.reserved-tokens:2}") int reservedTokens) {
+        this.portfolioStockRepository = portfolioStockRepository;
+        this.marketDataService = marketDataService;
+        this.priceHistoryStore = priceHistoryStore;
+        this.rateLimiter = rateLimiter;
+        this.taskScheduler = taskScheduler;
+        this.interval = interval;
+        this.reservedTokens = reservedTokens;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::run, interval);
+    }
+
+    synchronized void run() {
+        int budget = rateLimiter.getAvailableTokens() - reservedTokens;
+        if (budget <= 0) {
+            return;
+        }
+        try {
+            // Each pass starts from the current holdings, so new symbols are picked up
+            if (next >= symbols.size()) {
+                symbols = portfolioStockRepository.findHeldSymbolsByHoldings();
+                next = 0;
+            }
+            while (budget > 0 && next < symbols.size()) {
+                String symbol = symbols.get(next);
+                if (marketDataService.refreshCurrentData(symbol)) {
+                    budget--;
+                }
+                // The history is picked up by the next run once the quote is fresh
+                if (budget == 0) {
+                    break;
+                }
+                if (priceHistoryStore.needsSync(symbol)) {
+                    budget--;
+                    // A history sync blocks while the series downloads
+                    Mono.fromRunnable(() -> priceHistoryStore.getDailySeries(symbol, UpstreamPriority.BACKGROUND))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .subscribe(null, e -> {
+                                // Retried on the next pass
+                            });
+                }
+                next++;
+            }
+        } catch (RuntimeException e) {
+            // Skip this run, the next one retries
+        }
+    }
+}
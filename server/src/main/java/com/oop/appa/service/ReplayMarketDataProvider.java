@@ -0,0 +1,176 @@
+package com.oop.appa.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Replays recorded Alpha Vantage responses from a directory, for running and load
+ * testing the server offline without spending API quota. A request is answered
+ * from the first recording that exists:
+ * <ul>
+ * <li>{@code <FUNCTION>_<SYMBOL>.json}, or {@code <FUNCTION>_<KEYWORDS>.json} for
+ * searches, or {@code <FUNCTION>.json} for requests without either</li>
+ * <li>{@code <SYMBOL>Data.json} for TIME_SERIES_DAILY, the format of the client
+ * fixtures</li>
+ * <li>for GLOBAL_QUOTE, a quote built from the latest two days of the symbol's
+ * daily recording</li>
+ * </ul>
+ * Every response is delayed by the configured latency plus a uniform jitter, and a
+ * configurable share of calls fail or return the upstream rate limit notice.
+ */
+@Component
+@ConditionalOnProperty(name = "marketdata.provider", havingValue = "replay")
+public class ReplayMarketDataProvider implements MarketDataProvider {
+    private static final String RATE_LIMIT_NOTICE = "{\"Information\": \"Replayed API rate limit notice.\"}";
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final Duration latency;
+    private final Duration latencyJitter;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final Map<String, byte[]> recordings = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReplayMarketDataProvider(ObjectMapper objectMapper,
+            @Value("${marketdata.replay.directory:../client/src/data}") String directory,
+            @Value("${marketdata.replay.latency:200ms}") Duration latency,
+            @Value("${marketdata.replay.latency-jitter:100ms}") Duration latencyJitter,
+            @Value("${marketdata.replay.error-rate:0}") double errorRate,
+            @Value("${marketdata.replay.rate-limit-rate:0}") double rateLimitRate) {
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.latency = latency;
+        this.latencyJitter = latencyJitter;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> fetch(MarketDataRequest request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delayMillis = latency.toMillis();
+        if (!latencyJitter.isZero()) {
+            delayMillis += random.nextLong(-latencyJitter.toMillis(), latencyJitter.toMillis() + 1);
+        }
+        double outcome = random.nextDouble();
+        return CompletableFuture.supplyAsync(() -> {
+            if (outcome < errorRate) {
+                throw new IllegalStateException("Injected upstream error for " + request);
+            }
+            if (outcome < errorRate + rateLimitRate) {
+                return RATE_LIMIT_NOTICE.getBytes(StandardCharsets.UTF_8);
+            }
+            return replay(request);
+        }, CompletableFuture.delayedExecutor(Math.max(delayMillis, 0), TimeUnit.MILLISECONDS));
+    }
+
+    private byte[] replay(MarketDataRequest request) {
+        String function = request.getFunction();
+        String subject = request.getParameter("symbol") != null ? request.getParameter("symbol")
+                : request.getParameter("keywords");
+        String symbol = subject == null ? null : subject.toUpperCase();
+
+        byte[] recording = read(symbol == null ? function + ".json" : function + "_" + symbol + ".json");
+        if (recording == null && symbol != null) {
+            if ("TIME_SERIES_DAILY".equals(function)) {
+                recording = read(symbol + "Data.json");
+            } else if ("GLOBAL_QUOTE".equals(function)) {
+                recording = recordings.computeIfAbsent(function + "_" + symbol + ".synthetic",
+                        key -> quoteFromDailySeries(symbol));
+            }
+        }
+        if (recording == null) {
+            throw new IllegalArgumentException("No recorded response for " + request + " in " + directory);
+        }
+        return recording;
+    }
+
+    private byte[] read(String fileName) {
+        byte[] recording = recordings.get(fileName);
+        if (recording != null) {
+            return recording;
+        }
+        Path file = directory.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            recording = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading recorded response " + file, e);
+        }
+        recordings.put(fileName, recording);
+        return recording;
+    }
+
+    // Returns null when the symbol has no daily recording
+    private byte[] quoteFromDailySeries(String symbol) {
+        byte[] dailyRecording = read("TIME_SERIES_DAILY_" + symbol + ".json");
+        if (dailyRecording == null) {
+            dailyRecording = read(symbol + "Data.json");
+        }
+        if (dailyRecording == null) {
+            return null;
+        }
+        try {
+            JsonNode timeSeries = objectMapper.readTree(dailyRecording).path("Time Series (Daily)");
+            String latestDate = null;
+            String previousDate = null;
+            for (Iterator<String> dates = timeSeries.fieldNames(); dates.hasNext();) {
+                String date = dates.next();
+                if (latestDate == null || date.compareTo(latestDate) > 0) {
+                    previousDate = latestDate;
+                    latestDate = date;
+                } else if (previousDate == null || date.compareTo(previousDate) > 0) {
+                    previousDate = date;
+                }
+            }
+            if (latestDate == null) {
+                return null;
+            }
+            JsonNode latest = timeSeries.path(latestDate);
+            double price = latest.path("4. close").asDouble();
+            double previousClose = previousDate == null ? price
+                    : timeSeries.path(previousDate).path("4. close").asDouble();
+            double change = price - previousClose;
+
+            ObjectNode quote = objectMapper.createObjectNode();
+            ObjectNode globalQuote = quote.putObject("Global Quote");
+            globalQuote.put("01. symbol", symbol);
+            globalQuote.put("02. open", latest.path("1. open").asText());
+            globalQuote.put("03. high", latest.path("2. high").asText());
+            globalQuote.put("04. low", latest.path("3. low").asText());
+            globalQuote.put("05. price", latest.path("4. close").asText());
+            globalQuote.put("06. volume", latest.path("5. volume").asText());
+            globalQuote.put("07. latest trading day", latestDate);
+            globalQuote.put("08. previous close", String.format(Locale.ROOT, "%.4f", previousClose));
+            globalQuote.put("09. change", String.format(Locale.ROOT, "%.4f", change));
+            globalQuote.put("10. change percent", String.format(Locale.ROOT, "%.4f%%", change / previousClose * 100));
+            return objectMapper.writeValueAsBytes(quote);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading daily recording for " + symbol, e);
+        }
+    }
+}
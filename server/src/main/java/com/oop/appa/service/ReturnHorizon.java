@@ -0,0 +1,78 @@
+package com.oop.appa.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Periods a stock's return is calculated over, from the close on the horizon's
+ * start date, or the last trading day before it, to the current price. The one day
+ * return is taken from the quote's previous close instead.
+ */
+public enum ReturnHorizon {
+    ONE_DAY("1D"),
+    ONE_WEEK("1W"),
+    ONE_MONTH("1M"),
+    THREE_MONTHS("3M"),
+    YEAR_TO_DATE("YTD"),
+    ONE_YEAR("1Y");
+
+    private final String label;
+
+    ReturnHorizon(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public LocalDate getStartDate(LocalDate today) {
+        switch (this) {
+            case ONE_DAY:
+                return today.minusDays(1);
+            case ONE_WEEK:
+                return today.minusWeeks(1);
+            case ONE_MONTH:
+                // Month end close of last month
+                return today.withDayOfMonth(1).minusDays(1);
+            case THREE_MONTHS:
+                return today.minusMonths(3);
+            case YEAR_TO_DATE:
+                return today.withDayOfYear(1).minusDays(1);
+            default:
+                // Month end close of the month before the month one year ago
+                return today.minusYears(1).withDayOfMonth(1).minusDays(1);
+        }
+    }
+
+    public static ReturnHorizon fromLabel(String label) {
+        String normalized = label.trim().toUpperCase(Locale.ROOT);
+        for (ReturnHorizon horizon : values()) {
+            if (horizon.label.equals(normalized)) {
+                return horizon;
+            }
+        }
+        throw new IllegalArgumentException("Unknown return horizon: " + label);
+    }
+
+    /**
+     * Parses horizon labels such as 1D, 1W, 1M, 3M, YTD and 1Y, dropping repeats.
+     * No labels means every horizon.
+     */
+    public static List<ReturnHorizon> fromLabels(List<String> labels) {
+        if (labels == null || labels.isEmpty()) {
+            return Arrays.asList(values());
+        }
+        List<ReturnHorizon> horizons = new ArrayList<>();
+        for (String label : labels) {
+            ReturnHorizon horizon = fromLabel(label);
+            if (!horizons.contains(horizon)) {
+                horizons.add(horizon);
+            }
+        }
+        return horizons;
+    }
+}
@@ -0,0 +1,219 @@
+package com.oop.appa.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Running mean, variance and sum of each symbol's returns between month end closes
+ * since the start of the month one year ago, the window the volatilities are
+ * calculated over. The state of a symbol is built once from its price history and
+ * then kept up to date with Welford's algorithm: a month appended to the history
+ * adds one return, a month leaving the window removes one and a later or revised
+ * close of the current month replaces one, each in O(1), instead of walking the
+ * year again on every call.
+ *
+ * The {@link ReturnHorizon} returns keep no state here: each compares the current
+ * price with one past close, which the history finds by binary search, so there
+ * is no walk of the series for a running sum to save.
+ */
+@Component
+public class RollingStatistics {
+
+    /**
+     * Statistics of the returns in the window. The variance is the population
+     * variance, like the volatility calculations use.
+     */
+    public static final class Statistics {
+        private final int count;
+        private final int closes;
+        private final double mean;
+        private final double sumOfSquaredDeviations;
+
+        Statistics(int count, int closes, double mean, double sumOfSquaredDeviations) {
+            this.count = count;
+            this.closes = closes;
+            this.mean = mean;
+            this.sumOfSquaredDeviations = sumOfSquaredDeviations;
+        }
+
+        // Number of closes the returns were taken between
+        public int getCloses() {
+            return closes;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : mean;
+        }
+
+        public double getSum() {
+            return mean * count;
+        }
+
+        public double getVariance() {
+            return sumOfSquaredDeviations / count;
+        }
+
+        /**
+         * Sum of squared deviations of the returns from the given value, divided by
+         * the given count.
+         */
+        public double getVarianceAround(double center, int divisor) {
+            double offset = getMean() - center;
+            return (sumOfSquaredDeviations + count * offset * offset) / divisor;
+        }
+    }
+
+    private final PriceHistoryStore priceHistoryStore;
+    private final Map<String, WindowState> states = new ConcurrentHashMap<>();
+
+    public RollingStatistics(PriceHistoryStore priceHistoryStore) {
+        this.priceHistoryStore = priceHistoryStore;
+    }
+
+    public Statistics getMonthEndReturns(String symbol) {
+        MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(symbol);
+        WindowState state = states.computeIfAbsent(symbol.toUpperCase(), key -> new WindowState());
+        synchronized (state) {
+            state.update(dailySeries, LocalDate.now());
+            return state.statistics();
+        }
+    }
+
+    private static class WindowState {
+        // Returns in the window, keyed by the epoch day of their earlier close
+        private int[] keys = new int[16];
+        private double[] values = new double[16];
+        private int head;
+        private int size;
+
+        private int count;
+        private double mean;
+        private double m2;
+
+        // Bars of the history consumed so far and the latest of them
+        private int consumed;
+        private int lastDay;
+        private double lastClose;
+        // The previous month's close and whether the newest return is the current
+        // month's, which moves with every later day
+        private double baseClose;
+        private boolean provisional;
+
+        void update(MappedPriceSeries dailySeries, LocalDate today) {
+            int startDay = (int) today.minusYears(1).withDayOfMonth(1).toEpochDay();
+            if (consumed == 0 || dailySeries.size() < consumed || dailySeries.epochDay(consumed - 1) != lastDay) {
+                reset();
+                consumed = dailySeries.ceilingIndex(LocalDate.ofEpochDay(startDay));
+            } else if (dailySeries.close(consumed - 1) != lastClose) {
+                revise(dailySeries.close(consumed - 1));
+            }
+            for (; consumed < dailySeries.size(); consumed++) {
+                append(dailySeries.epochDay(consumed), dailySeries.close(consumed));
+            }
+            while (size > 0 && keys[head] < startDay) {
+                remove(values[head]);
+                head = (head + 1) % keys.length;
+                size--;
+            }
+        }
+
+        Statistics statistics() {
+            int closes = count == 0 ? (lastDay == 0 ? 0 : 1) : count + 1;
+            return new Statistics(count, closes, mean, Math.max(m2, 0.0));
+        }
+
+        private void append(int day, double close) {
+            if (lastDay == 0) {
+                lastDay = day;
+                lastClose = close;
+                return;
+            }
+            if (YearMonth.from(LocalDate.ofEpochDay(day)).equals(YearMonth.from(LocalDate.ofEpochDay(lastDay)))) {
+                // A later day of the same month moves that month's close
+                if (provisional) {
+                    replaceNewest((close - baseClose) / baseClose);
+                }
+            } else {
+                baseClose = lastClose;
+                push(lastDay, (close - baseClose) / baseClose);
+                provisional = true;
+            }
+            lastDay = day;
+            lastClose = close;
+        }
+
+        // The store rewrote the close of the latest day in place
+        private void revise(double close) {
+            if (provisional) {
+                replaceNewest((close - baseClose) / baseClose);
+            }
+            lastClose = close;
+        }
+
+        private void push(int key, double value) {
+            if (size == keys.length) {
+                int[] newKeys = new int[keys.length * 2];
+                double[] newValues = new double[keys.length * 2];
+                for (int i = 0; i < size; i++) {
+                    newKeys[i] = keys[(head + i) % keys.length];
+                    newValues[i] = values[(head + i) % keys.length];
+                }
+                keys = newKeys;
+                values = newValues;
+                head = 0;
+            }
+            int tail = (head + size) % keys.length;
+            keys[tail] = key;
+            values[tail] = value;
+            size++;
+            add(value);
+        }
+
+        private void replaceNewest(double value) {
+            if (size == 0) {
+                return;
+            }
+            int tail = (head + size - 1) % keys.length;
+            remove(values[tail]);
+            values[tail] = value;
+            add(value);
+        }
+
+        private void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        private void remove(double value) {
+            if (count == 1) {
+                count = 0;
+                mean = 0.0;
+                m2 = 0.0;
+                return;
+            }
+            double previousMean = (count * mean - value) / (count - 1);
+            m2 -= (value - mean) * (value - previousMean);
+            mean = previousMean;
+            count--;
+        }
+
+        private void reset() {
+            head = 0;
+            size = 0;
+            count = 0;
+            mean = 0.0;
+            m2 = 0.0;
+            consumed = 0;
+            lastDay = 0;
+            lastClose = 0.0;
+            baseClose = 0.0;
+            provisional = false;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.oop.appa.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -13,6 +14,8 @@ import org.springframework.transaction.annotation.Transactional;
 import com.oop.appa.entity.Stock;
 import com.oop.appa.entity.StockLookup;
 
+import reactor.core.publisher.Mono;
+
 @Service
 @Transactional
 public interface StockService {
@@ -46,20 +49,47 @@ public interface StockService {
     public double calculateYesterdayReturn(String stockSymbol);
 
     @Cacheable(value = "oneYearData", key = "#stockSymbol")
-    public List<Map<String, Object>> fetchOneYearData(String stockSymbol);
+    public PriceSeries fetchOneYearData(String stockSymbol);
 
-    public List<Map<String, Object>> fetchOneQuarterData(String stockSymbol);
+    public PriceSeries fetchOneQuarterData(String stockSymbol);
 
-    public List<Map<String, Object>> fetchOneMonthData(String stockSymbol);
+    public PriceSeries fetchOneMonthData(String stockSymbol);
 
-    public List<Map<String, Object>> fetchOneWeekData(String stockSymbol);
+    public PriceSeries fetchOneWeekData(String stockSymbol);
 
     public Map<String, Object> fetchStockPriceAtDate(String stockSymbol, String stringDate);
 
+    // Price at each date for each symbol, keyed by symbol and then by date
+    public Map<String, Map<String, Map<String, Object>>> fetchStockPricesAtDates(Collection<String> stockSymbols,
+            Collection<String> stringDates);
+
     public Map<String, Double> calculateMonthlyVolatility(String stockSymbol);
 
     @Cacheable(value = "annualizedVolatility", key = "#stockSymbol")
     public Map<String, Double> calculateAnnualizedVolatility(String stockSymbol);
 
     public Map<String, Double> fetchStockPricesUpToPeriod(String stockSymbol, String period);
+
+    // Changes whenever a day is added to the symbol's daily history or its latest day is revised
+    public String getDailySeriesVersion(String stockSymbol);
+
+    // Whether the closes answering these dates are final, because the history already has a later day
+    public boolean isPriceAtDateFinal(Collection<String> stockSymbols, Collection<String> stringDates);
+
+    // Non-blocking variants for the endpoints that wait on live quotes
+    public Mono<List<Map<String, String>>> searchBarAsync(String searchTerm);
+
+    public Mono<Double> calculateOneYearReturnAsync(String stockSymbol);
+
+    public Mono<Double> calculateOneMonthReturnAsync(String stockSymbol);
+
+    public Mono<Double> calculateOneWeekReturnAsync(String stockSymbol);
+
+    public Mono<Double> calculateYesterdayReturnAsync(String stockSymbol);
+
+    // Returns keyed by horizon label, null where the history does not go back far enough
+    public Mono<Map<String, Double>> calculateReturnsAsync(String stockSymbol, List<ReturnHorizon> horizons);
+
+    public Mono<Map<String, Map<String, Double>>> calculateReturnsAsync(Collection<String> stockSymbols,
+            List<ReturnHorizon> horizons);
 }
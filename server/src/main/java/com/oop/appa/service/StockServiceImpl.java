@@ -1,27 +1,25 @@
 package com.oop.appa.service;
 
-import java.io.InputStream;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Spliterator;
-import java.util.Spliterators;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import java.util.stream.StreamSupport;
-import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.oop.appa.dao.StockLookupRepository;
@@ -29,18 +27,30 @@ import com.oop.appa.dao.StockRepository;
 import com.oop.appa.entity.Stock;
 import com.oop.appa.entity.StockLookup;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 @Service
 public class StockServiceImpl implements StockService {
     private final StockRepository stockRepository;
     private final MarketDataService marketDataService;
     private final StockLookupRepository stockLookupRepository;
+    private final PriceHistoryStore priceHistoryStore;
+    private final RollingStatistics rollingStatistics;
+    private final int batchConcurrency;
 
     @Autowired
     public StockServiceImpl(StockRepository stockRepository, MarketDataService marketDataService,
-            StockLookupRepository stockLookupRepository) {
+            StockLookupRepository stockLookupRepository, PriceHistoryStore priceHistoryStore,
+            RollingStatistics rollingStatistics,
+            @Value("${marketdata.batch.concurrency:4}") int batchConcurrency) {
         this.stockRepository = stockRepository;
         this.marketDataService = marketDataService;
         this.stockLookupRepository = stockLookupRepository;
+        this.priceHistoryStore = priceHistoryStore;
+        this.rollingStatistics = rollingStatistics;
+        this.batchConcurrency = batchConcurrency;
     }
 
     // GET
@@ -88,8 +98,13 @@ public class StockServiceImpl implements StockService {
 
     @Override
     public List<Map<String, String>> searchBar(String searchTerm) {
-        try {
-            JsonNode searchResults = marketDataService.fetchSearchTicker(searchTerm).path("bestMatches");
+        return searchBarAsync(searchTerm).block();
+    }
+
+    @Override
+    public Mono<List<Map<String, String>>> searchBarAsync(String searchTerm) {
+        return marketDataService.fetchSearchTickerAsync(searchTerm).map(response -> {
+            JsonNode searchResults = response.path("bestMatches");
             List<Map<String, String>> results = new ArrayList<>();
             String regex = "^[A-Za-z]+$";
 
@@ -105,13 +120,8 @@ public class StockServiceImpl implements StockService {
                     results.add(result);
                 }
             }
-            if (results.size() == 0) {
-                return new ArrayList<>();
-            }
             return results;
-        } catch (Exception e) {
-            throw new RuntimeException("Error for search bar service: ", e);
-        }
+        }).onErrorMap(e -> new RuntimeException("Error for search bar service: ", e));
     }
 
     @Override
@@ -155,118 +165,145 @@ public class StockServiceImpl implements StockService {
     // Others
     @Override
     public double calculateOneYearReturn(String stockSymbol) {
-        try {
-            JsonNode yearlyJson = marketDataService.fetchMonthData(stockSymbol);
-            JsonNode currentJson = marketDataService.fetchCurrentData(stockSymbol);
-            double currentClose = currentJson.path("Global Quote").path("05. price").asDouble();
-            String oneYearAgoPrefix = getDateOneYearAgo(true).substring(0, 7);
-            JsonNode yearlyTimeSeries = yearlyJson.path("Monthly Time Series");
-            List<String> keys = StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(yearlyTimeSeries.fieldNames(), Spliterator.ORDERED),
-                    false)
-                    .collect(Collectors.toList());
-            String matchingKey = keys.stream()
-                    .filter(key -> key.compareTo(oneYearAgoPrefix) <= 0)
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("No data found for the date prefix: " + oneYearAgoPrefix));
-            double oneYearAgoClose = yearlyTimeSeries.path(matchingKey).path("4. close").asDouble();
-            double oneYearReturn = (currentClose - oneYearAgoClose) / oneYearAgoClose;
-            return oneYearReturn;
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating one year return service: " + e.getMessage(), e);
-        }
+        return calculateOneYearReturnAsync(stockSymbol).block();
     }
 
     @Override
     public double calculateOneMonthReturn(String stockSymbol) {
-        try {
-            JsonNode monthlyJson = marketDataService.fetchMonthData(stockSymbol);
-            JsonNode currentJson = marketDataService.fetchCurrentData(stockSymbol);
-            double currentClose = currentJson.path("Global Quote").path("05. price").asDouble();
-            String oneMonthAgoPrefix = getDateOneMonthAgo(true).substring(0, 7); // e.g., "2023-09"
-            JsonNode monthlyTimeSeries = monthlyJson.path("Monthly Time Series");
-            List<String> keys = StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(monthlyTimeSeries.fieldNames(), Spliterator.ORDERED),
-                    false)
-                    .collect(Collectors.toList());
-            String matchingKey = keys.stream()
-                    .filter(key -> key.startsWith(oneMonthAgoPrefix))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("No data found for the date prefix: " + oneMonthAgoPrefix));
-            double oneMonthAgoClose = monthlyTimeSeries.path(matchingKey).path("4. close").asDouble();
-            double oneMonthReturn = (currentClose - oneMonthAgoClose) / oneMonthAgoClose;
-            return oneMonthReturn;
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating one month return service: " + e.getMessage(), e);
-        }
+        return calculateOneMonthReturnAsync(stockSymbol).block();
     }
 
     @Override
     public double calculateOneWeekReturn(String stockSymbol) {
-        try {
-            JsonNode dailyJson = marketDataService.fetchDailyData(stockSymbol, "compact");
-            JsonNode currentJson = marketDataService.fetchCurrentData(stockSymbol);
-            double currentClose = currentJson.path("Global Quote").path("05. price").asDouble();
-            JsonNode dailyTimeSeries = dailyJson.path("Time Series (Daily)");
-            List<String> keys = StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(dailyTimeSeries.fieldNames(), Spliterator.ORDERED),
-                    false)
-                    .collect(Collectors.toList());
-            // Find the closest available date before the desired date
-            String matchingKey = keys.stream()
-                    .filter(key -> key.compareTo(getDateOneWeekAgo()) <= 0) // Dates before or equal to the desired date
-                    .findFirst()
-                    .orElseThrow(
-                            () -> new RuntimeException("No data found for the date prefix: " + getDateOneWeekAgo()));
-            double specificDateClose = dailyTimeSeries.path(matchingKey).path("4. close").asDouble();
-            double specificDateReturn = (currentClose - specificDateClose) / specificDateClose;
-            return specificDateReturn;
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating one week return service: " + e.getMessage(), e);
-        }
-
+        return calculateOneWeekReturnAsync(stockSymbol).block();
     }
 
     @Override
     public double calculateYesterdayReturn(String stockSymbol) {
-        try {
-            JsonNode currentData = marketDataService.fetchCurrentData(stockSymbol);
+        return calculateYesterdayReturnAsync(stockSymbol).block();
+    }
+
+    @Override
+    public Mono<Double> calculateOneYearReturnAsync(String stockSymbol) {
+        Mono<Double> oneYearAgoClose = fromHistory(() -> {
+            // Month end close of the month before the month one year ago
+            LocalDate oneYearAgoMonthStart = LocalDate.now().minusYears(1).withDayOfMonth(1);
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol);
+            int oneYearAgo = dailySeries.floorIndex(oneYearAgoMonthStart.minusDays(1));
+            if (oneYearAgo < 0) {
+                throw new RuntimeException("No data found for the date prefix: " + YearMonth.from(oneYearAgoMonthStart));
+            }
+            return dailySeries.close(oneYearAgo);
+        });
+        return Mono.zip(fetchCurrentClose(stockSymbol), oneYearAgoClose,
+                (currentClose, pastClose) -> (currentClose - pastClose) / pastClose)
+                .onErrorMap(e -> new RuntimeException("Error calculating one year return service: " + e.getMessage(), e));
+    }
+
+    @Override
+    public Mono<Double> calculateOneMonthReturnAsync(String stockSymbol) {
+        Mono<Double> oneMonthAgoClose = fromHistory(() -> {
+            YearMonth oneMonthAgoMonth = YearMonth.from(LocalDate.now().minusMonths(1)); // e.g., "2023-09"
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol);
+            int oneMonthAgo = dailySeries.floorIndex(oneMonthAgoMonth.atEndOfMonth());
+            if (oneMonthAgo < 0 || !YearMonth.from(dailySeries.date(oneMonthAgo)).equals(oneMonthAgoMonth)) {
+                throw new RuntimeException("No data found for the date prefix: " + oneMonthAgoMonth);
+            }
+            return dailySeries.close(oneMonthAgo);
+        });
+        return Mono.zip(fetchCurrentClose(stockSymbol), oneMonthAgoClose,
+                (currentClose, pastClose) -> (currentClose - pastClose) / pastClose)
+                .onErrorMap(e -> new RuntimeException("Error calculating one month return service: " + e.getMessage(), e));
+    }
+
+    @Override
+    public Mono<Double> calculateOneWeekReturnAsync(String stockSymbol) {
+        Mono<Double> specificDateClose = fromHistory(() -> {
+            // Find the closest available date before the desired date
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol);
+            int specificDate = dailySeries.floorIndex(LocalDate.parse(getDateOneWeekAgo()));
+            if (specificDate < 0) {
+                throw new RuntimeException("No data found for the date prefix: " + getDateOneWeekAgo());
+            }
+            return dailySeries.close(specificDate);
+        });
+        return Mono.zip(fetchCurrentClose(stockSymbol), specificDateClose,
+                (currentClose, pastClose) -> (currentClose - pastClose) / pastClose)
+                .onErrorMap(e -> new RuntimeException("Error calculating one week return service: " + e.getMessage(), e));
+    }
+
+    @Override
+    public Mono<Double> calculateYesterdayReturnAsync(String stockSymbol) {
+        return marketDataService.fetchCurrentDataAsync(stockSymbol).map(currentData -> {
             JsonNode globalQuote = currentData.path("Global Quote");
             double currentClose = globalQuote.path("05. price").asDouble();
             double yesterdayClose = globalQuote.path("08. previous close").asDouble();
-            double yesterdayReturn = (currentClose - yesterdayClose) / yesterdayClose;
-            return yesterdayReturn;
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating yesterday return service:  " + e.getMessage(), e);
-        }
+            return (currentClose - yesterdayClose) / yesterdayClose;
+        }).onErrorMap(e -> new RuntimeException("Error calculating yesterday return service:  " + e.getMessage(), e));
+    }
 
+    @Override
+    public Mono<Map<String, Double>> calculateReturnsAsync(String stockSymbol, List<ReturnHorizon> horizons) {
+        // The past closes of every horizon are looked up in one read of the daily
+        // history, and the current price and previous close come from one quote
+        Mono<double[]> pastCloses = fromHistory(() -> {
+            LocalDate today = LocalDate.now();
+            double[] closes = new double[horizons.size()];
+            MappedPriceSeries dailySeries = null;
+            for (int i = 0; i < horizons.size(); i++) {
+                if (horizons.get(i) == ReturnHorizon.ONE_DAY) {
+                    continue;
+                }
+                if (dailySeries == null) {
+                    dailySeries = priceHistoryStore.getDailySeries(stockSymbol);
+                }
+                int index = dailySeries.floorIndex(horizons.get(i).getStartDate(today));
+                closes[i] = index < 0 ? Double.NaN : dailySeries.close(index);
+            }
+            return closes;
+        });
+        return Mono.zip(marketDataService.fetchCurrentDataAsync(stockSymbol), pastCloses, (currentData, closes) -> {
+            JsonNode globalQuote = currentData.path("Global Quote");
+            double currentClose = globalQuote.path("05. price").asDouble();
+            Map<String, Double> returns = new LinkedHashMap<>();
+            for (int i = 0; i < horizons.size(); i++) {
+                double pastClose = horizons.get(i) == ReturnHorizon.ONE_DAY
+                        ? globalQuote.path("08. previous close").asDouble()
+                        : closes[i];
+                returns.put(horizons.get(i).getLabel(),
+                        Double.isNaN(pastClose) ? null : (currentClose - pastClose) / pastClose);
+            }
+            return returns;
+        }).onErrorMap(e -> new RuntimeException("Error calculating returns service: " + e.getMessage(), e));
     }
 
     @Override
-    public List<Map<String, Object>> fetchOneYearData(String stockSymbol) {
+    public Mono<Map<String, Map<String, Double>>> calculateReturnsAsync(Collection<String> stockSymbols,
+            List<ReturnHorizon> horizons) {
+        return Flux.fromIterable(new LinkedHashSet<>(stockSymbols))
+                .flatMapSequential(symbol -> calculateReturnsAsync(symbol, horizons)
+                        .map(returns -> Map.entry(symbol, returns)), batchConcurrency)
+                .collect(LinkedHashMap::new, (returnsBySymbol, entry) -> returnsBySymbol.put(entry.getKey(), entry.getValue()));
+    }
+
+    private Mono<Double> fetchCurrentClose(String stockSymbol) {
+        return marketDataService.fetchCurrentDataAsync(stockSymbol)
+                .map(currentJson -> currentJson.path("Global Quote").path("05. price").asDouble());
+    }
+
+    // Price history reads local files and may sync with the upstream first, so it
+    // runs on the bounded elastic scheduler instead of the caller's thread
+    private static <T> Mono<T> fromHistory(Callable<T> lookup) {
+        return Mono.fromCallable(lookup).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public PriceSeries fetchOneYearData(String stockSymbol) {
         try {
-            JsonNode yearlyJson = marketDataService.fetchMonthData(stockSymbol);
-            String oneYearAgoPrefix = getDateOneYearAgo(true).substring(0, 7); // e.g., "2022-09"
-            JsonNode yearlyTimeSeries = yearlyJson.path("Monthly Time Series");
-
-            List<String> keys = StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(yearlyTimeSeries.fieldNames(), Spliterator.ORDERED),
-                    false)
-                    .collect(Collectors.toList());
-
-            List<String> filteredKeys = keys.stream()
-                    .filter(key -> key.compareTo(oneYearAgoPrefix) >= 0)
-                    .collect(Collectors.toList());
-
-            List<Map<String, Object>> dataPoints = filteredKeys.stream()
-                    .map(key -> {
-                        Map<String, Object> dataPoint = new HashMap<>();
-                        dataPoint.put("date", key);
-                        dataPoint.put("4. close", yearlyTimeSeries.path(key).path("4. close").asText());
-                        return dataPoint;
-                    })
-                    .collect(Collectors.toList());
-            return dataPoints;
+            LocalDate oneYearAgoMonthStart = LocalDate.now().minusYears(1).withDayOfMonth(1); // e.g., "2022-09-01"
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol)
+                    .slice(oneYearAgoMonthStart, LocalDate.now());
+            return PriceSeries.monthEnds(dailySeries);
         } catch (Exception e) {
             throw new RuntimeException("Error fetching one year data service: " + e.getMessage(), e);
         }
@@ -274,31 +311,12 @@ public class StockServiceImpl implements StockService {
     }
 
     @Override
-    public List<Map<String, Object>> fetchOneQuarterData(String stockSymbol) {
+    public PriceSeries fetchOneQuarterData(String stockSymbol) {
         try {
-            JsonNode quarterlyJson = marketDataService.fetchDailyData(stockSymbol, "compact");
-            String threeMonthsAgoDate = getDateThreeMonthsAgo(false); // e.g., "2023-07-15"
-            JsonNode quarterlyTimeSeries = quarterlyJson.path("Time Series (Daily)");
-
-            List<String> keys = StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(quarterlyTimeSeries.fieldNames(), Spliterator.ORDERED),
-                    false)
-                    .collect(Collectors.toList());
-
-            List<String> filteredKeys = keys.stream()
-                    .filter(key -> key.compareTo(threeMonthsAgoDate) >= 0) // Filter dates after three months ago
-                    .collect(Collectors.toList());
-
-            List<Map<String, Object>> dataPoints = filteredKeys.stream()
-                    .map(key -> {
-                        Map<String, Object> dataPoint = new HashMap<>();
-                        dataPoint.put("date", key);
-                        dataPoint.put("4. close", quarterlyTimeSeries.path(key).path("4. close").asText());
-                        return dataPoint;
-                    })
-                    .collect(Collectors.toList());
-
-            return dataPoints;
+            LocalDate threeMonthsAgoDate = LocalDate.parse(getDateThreeMonthsAgo(false)); // e.g., "2023-07-15"
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol)
+                    .slice(threeMonthsAgoDate, LocalDate.now());
+            return PriceSeries.daily(dailySeries);
         } catch (Exception e) {
             throw new RuntimeException("Error fetching one quarter data service: " + e.getMessage(), e);
         }
@@ -306,31 +324,12 @@ public class StockServiceImpl implements StockService {
     }
 
     @Override
-    public List<Map<String, Object>> fetchOneMonthData(String stockSymbol) {
+    public PriceSeries fetchOneMonthData(String stockSymbol) {
         try {
-            JsonNode monthlyJson = marketDataService.fetchDailyData(stockSymbol, "compact");
-            String oneMonthAgoDate = getDateOneMonthAgo(false); // e.g., "2023-09-15"
-            JsonNode monthlyTimeSeries = monthlyJson.path("Time Series (Daily)");
-
-            List<String> keys = StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(monthlyTimeSeries.fieldNames(), Spliterator.ORDERED),
-                    false)
-                    .collect(Collectors.toList());
-
-            List<String> filteredKeys = keys.stream()
-                    .filter(key -> key.compareTo(oneMonthAgoDate) >= 0) // Filter dates after one month ago
-                    .collect(Collectors.toList());
-
-            List<Map<String, Object>> dataPoints = filteredKeys.stream()
-                    .map(key -> {
-                        Map<String, Object> dataPoint = new HashMap<>();
-                        dataPoint.put("date", key);
-                        dataPoint.put("4. close", monthlyTimeSeries.path(key).path("4. close").asText());
-                        return dataPoint;
-                    })
-                    .collect(Collectors.toList());
-
-            return dataPoints;
+            LocalDate oneMonthAgoDate = LocalDate.parse(getDateOneMonthAgo(false)); // e.g., "2023-09-15"
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol)
+                    .slice(oneMonthAgoDate, LocalDate.now());
+            return PriceSeries.daily(dailySeries);
         } catch (Exception e) {
             throw new RuntimeException("Error fetching one month data service: " + e.getMessage(), e);
         }
@@ -338,31 +337,12 @@ public class StockServiceImpl implements StockService {
     }
 
     @Override
-    public List<Map<String, Object>> fetchOneWeekData(String stockSymbol) {
+    public PriceSeries fetchOneWeekData(String stockSymbol) {
         try {
-            JsonNode dailyJson = marketDataService.fetchDailyData(stockSymbol, "compact");
-            String oneWeekAgoDate = getDateOneWeekAgo(); // e.g., "2023-09-15"
-            JsonNode dailyTimeSeries = dailyJson.path("Time Series (Daily)");
-
-            List<String> keys = StreamSupport.stream(
-                    Spliterators.spliteratorUnknownSize(dailyTimeSeries.fieldNames(), Spliterator.ORDERED),
-                    false)
-                    .collect(Collectors.toList());
-
-            List<String> filteredKeys = keys.stream()
-                    .filter(key -> key.compareTo(oneWeekAgoDate) >= 0) // Filter dates after one week ago
-                    .collect(Collectors.toList());
-
-            List<Map<String, Object>> dataPoints = filteredKeys.stream()
-                    .map(key -> {
-                        Map<String, Object> dataPoint = new HashMap<>();
-                        dataPoint.put("date", key);
-                        dataPoint.put("4. close", dailyTimeSeries.path(key).path("4. close").asText());
-                        return dataPoint;
-                    })
-                    .collect(Collectors.toList());
-
-            return dataPoints;
+            LocalDate oneWeekAgoDate = LocalDate.parse(getDateOneWeekAgo()); // e.g., "2023-09-15"
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol)
+                    .slice(oneWeekAgoDate, LocalDate.now());
+            return PriceSeries.daily(dailySeries);
         } catch (Exception e) {
             throw new RuntimeException("Error fetching one week data service: " + e.getMessage(), e);
         }
@@ -371,70 +351,83 @@ public class StockServiceImpl implements StockService {
     @Override
     public Map<String, Object> fetchStockPriceAtDate(String stockSymbol, String stringDate) {
         try {
-            LocalDate date = LocalDate.parse(stringDate);
-            if (date.isAfter(LocalDate.now())) {
-                throw new IllegalArgumentException("Date cannot be in the future: " + stringDate);
-            }
-            InputStream responseStream = marketDataService.fetchDailyDataStream(stockSymbol, "full");
-            JsonStreamProcessor processor = new JsonStreamProcessor();
-            Map<String, Double> stockPrices = processor.processJsonStream(responseStream);
-            Map<String, Object> result = new HashMap<>();
-            String message;
-
-            for (int i = 0; i < 10; i++) {
-                Double price = stockPrices.get(date.toString());
-
-                if (price != null) {
-                    result.put("date", date.toString());
-                    result.put("price", price);
-                    if (date.equals(LocalDate.parse(stringDate))) {
-                        message = "Exact date match found.";
-                    } else if (date.equals(LocalDate.now())) {
-                        message = "Date selected was today and data was available.";
-                    } else if (date.equals(LocalDate.now().minusDays(1))) {
-                        message = "Date selected was today and data was not available. Closest date match found.";
-                    } else {
-                        message = "Date selected was a weekend or a bank holiday. Closest date match found.";
-                    }
-                    result.put("message", message);
-                    return result;
-                } else {
-                    if (date.getDayOfWeek() == DayOfWeek.MONDAY) {
-                        date = date.minusDays(3);
-                    } else {
-                        date = date.minusDays(1);
-                    }
+            LocalDate date = parsePastDate(stringDate);
+            return priceAtDate(priceHistoryStore.getDailySeries(stockSymbol), date);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error fetching stock price at date service: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, Map<String, Object>>> fetchStockPricesAtDates(Collection<String> stockSymbols,
+            Collection<String> stringDates) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (String stringDate : new LinkedHashSet<>(stringDates)) {
+            dates.add(parsePastDate(stringDate));
+        }
+        try {
+            // One read of each symbol's local history answers all of its dates
+            Map<String, Map<String, Map<String, Object>>> pricesBySymbol = new LinkedHashMap<>();
+            for (String stockSymbol : new LinkedHashSet<>(stockSymbols)) {
+                MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol);
+                Map<String, Map<String, Object>> pricesByDate = new LinkedHashMap<>();
+                for (LocalDate date : dates) {
+                    pricesByDate.put(date.toString(), priceAtDate(dailySeries, date));
                 }
+                pricesBySymbol.put(stockSymbol, pricesByDate);
             }
-            return result;
+            return pricesBySymbol;
+        } catch (Exception e) {
+            throw new RuntimeException("Error fetching stock prices at dates service: " + e.getMessage(), e);
+        }
+    }
 
+    private static LocalDate parsePastDate(String stringDate) {
+        try {
+            LocalDate date = LocalDate.parse(stringDate.trim());
+            if (date.isAfter(LocalDate.now())) {
+                throw new IllegalArgumentException("Date cannot be in the future: " + stringDate);
+            }
+            return date;
         } catch (DateTimeParseException e) {
             throw new IllegalArgumentException("Invalid date format: " + stringDate, e);
-        } catch (Exception e) {
-            throw new RuntimeException("Error fetching stock price at date service: " + e.getMessage(), e);
         }
     }
 
+    // Close of the requested date, or of the closest trading day before it
+    private static Map<String, Object> priceAtDate(MappedPriceSeries dailySeries, LocalDate requested) {
+        Map<String, Object> result = new HashMap<>();
+        int index = dailySeries.floorIndex(requested);
+        if (index < 0) {
+            return result;
+        }
+        LocalDate date = dailySeries.date(index);
+        result.put("date", date.toString());
+        result.put("price", dailySeries.close(index));
+        String message;
+        if (date.equals(requested)) {
+            message = "Exact date match found.";
+        } else if (requested.equals(LocalDate.now())) {
+            message = "Date selected was today and data was not available. Closest date match found.";
+        } else if (!TradingCalendar.isTradingDay(requested)
+                && date.equals(TradingCalendar.onOrBefore(requested))) {
+            message = "Date selected was a weekend or a bank holiday. Closest date match found.";
+        } else {
+            message = "No data was available for the date selected. Closest date match found.";
+        }
+        result.put("message", message);
+        return result;
+    }
+
     @Override
     public Map<String, Double> calculateMonthlyVolatility(String stockSymbol) {
         Map<String, Double> monthlyVolatilities = new HashMap<>();
         try {
-            List<Map<String, Object>> monthlyData = fetchOneYearData(stockSymbol);
-
-            List<Double> monthlyClosingPrices = monthlyData.stream()
-                    .map(dataPoint -> Double.parseDouble(dataPoint.get("4. close").toString()))
-                    .collect(Collectors.toList());
-
-            List<Double> monthlyReturns = new ArrayList<>();
-            for (int i = 1; i < monthlyClosingPrices.size(); i++) {
-                double monthlyReturn = (monthlyClosingPrices.get(i) - monthlyClosingPrices.get(i - 1))
-                        / monthlyClosingPrices.get(i - 1);
-                monthlyReturns.add(monthlyReturn);
-            }
-
-            double mean = monthlyReturns.stream().mapToDouble(val -> val).average().orElse(0.0);
-            double variance = monthlyReturns.stream().mapToDouble(val -> Math.pow(val - mean, 2)).sum()
-                    / monthlyReturns.size();
+            // Month end returns of the year, maintained as the history gains days
+            RollingStatistics.Statistics monthlyReturns = rollingStatistics.getMonthEndReturns(stockSymbol);
+            double variance = monthlyReturns.getVariance();
 
             double monthlyVolatility = Math.sqrt(variance);
             monthlyVolatilities.put(stockSymbol, monthlyVolatility);
@@ -449,27 +442,14 @@ public class StockServiceImpl implements StockService {
         Map<String, Double> annualizedVolatilities = new HashMap<>();
 
         try {
-            List<Map<String, Object>> monthlyData = fetchOneYearData(stockSymbol);
-            int dataSize = monthlyData.size();
-            List<Double> monthlyReturns = new ArrayList<>(dataSize);
-            double sum = 0.0;
-            double currentClose, previousClose = Double.parseDouble((String) monthlyData.get(0).get("4. close"));
-
-            for (int i = 1; i < dataSize; i++) {
-                currentClose = Double.parseDouble((String) monthlyData.get(i).get("4. close"));
-                double monthlyReturn = (currentClose - previousClose) / previousClose;
-                monthlyReturns.add(monthlyReturn);
-                sum += monthlyReturn;
-                previousClose = currentClose;
+            RollingStatistics.Statistics monthlyReturns = rollingStatistics.getMonthEndReturns(stockSymbol);
+            int dataSize = monthlyReturns.getCloses();
+            if (dataSize == 0) {
+                throw new IllegalStateException("No monthly data for " + stockSymbol);
             }
-
-            double mean = sum / dataSize;
-            double variance = 0.0;
-
-            for (double monthlyReturn : monthlyReturns) {
-                variance += Math.pow(monthlyReturn - mean, 2);
-            }
-            variance /= dataSize;
+            // Mean and variance divide by the number of month ends, not of returns
+            double mean = monthlyReturns.getSum() / dataSize;
+            double variance = monthlyReturns.getVarianceAround(mean, dataSize);
 
             double monthlyVolatility = Math.sqrt(variance);
             double annualizedVolatility = monthlyVolatility * Math.sqrt(12);
@@ -486,31 +466,64 @@ public class StockServiceImpl implements StockService {
         try {
             LocalDate endDate = LocalDate.now();
             LocalDate startDate = getStartDateForPeriod(endDate, period);
-            InputStream responseStream;
-            if (period.equals("year")) {
-                responseStream = marketDataService.fetchDailyDataStream(stockSymbol, "full");
-            } else {
-                responseStream = marketDataService.fetchDailyDataStream(stockSymbol, "compact");
-            }
-            JsonStreamProcessor processor = new JsonStreamProcessor();
-            Map<String, Double> stockPrices = processor.processJsonStream(responseStream);
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol).slice(startDate, endDate);
             Map<String, Double> result = new TreeMap<>(); // Use TreeMap instead of HashMap
-
-            // Stream dates from start date to end date and add prices to result
-            Stream.iterate(startDate, date -> date.plusDays(1))
-                    .limit(ChronoUnit.DAYS.between(startDate, endDate) + 1)
-                    .forEach(date -> {
-                        Double price = stockPrices.get(date.toString());
-                        if (price != null) {
-                            result.put(date.toString(), price);
-                        }
-                    });
+            for (int i = 0; i < dailySeries.size(); i++) {
+                result.put(dailySeries.date(i).toString(), dailySeries.close(i));
+            }
             return result;
         } catch (Exception e) {
             throw new RuntimeException("Error fetching stock prices up to period: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public String getDailySeriesVersion(String stockSymbol) {
+        try {
+            MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol);
+            if (dailySeries.isEmpty()) {
+                return "0";
+            }
+            int last = dailySeries.size() - 1;
+            return dailySeries.size() + ":" + dailySeries.epochDay(last) + ":"
+                    + Double.doubleToLongBits(dailySeries.close(last));
+        } catch (Exception e) {
+            throw new RuntimeException("Error getting daily series version service: " + e.getMessage(), e);
+        }
+    }
+
+    // Days before the latest stored day are never rewritten, only the latest day is
+    // revised and later days are appended
+    @Override
+    public boolean isPriceAtDateFinal(Collection<String> stockSymbols, Collection<String> stringDates) {
+        LocalDate earliestDate = null;
+        LocalDate latestDate = null;
+        for (String stringDate : stringDates) {
+            LocalDate date = parsePastDate(stringDate);
+            if (earliestDate == null || date.isBefore(earliestDate)) {
+                earliestDate = date;
+            }
+            if (latestDate == null || date.isAfter(latestDate)) {
+                latestDate = date;
+            }
+        }
+        if (latestDate == null) {
+            return false;
+        }
+        try {
+            for (String stockSymbol : stockSymbols) {
+                MappedPriceSeries dailySeries = priceHistoryStore.getDailySeries(stockSymbol);
+                if (dailySeries.floorIndex(earliestDate) < 0
+                        || !dailySeries.date(dailySeries.size() - 1).isAfter(latestDate)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            throw new RuntimeException("Error checking price at date service: " + e.getMessage(), e);
+        }
+    }
+
     private LocalDate getStartDateForPeriod(LocalDate referenceDate, String period) {
         switch (period.toLowerCase()) {
             case "year":
@@ -0,0 +1,141 @@
+package com.oop.appa.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trading days of the US stock exchanges: weekdays that are not one of the NYSE
+ * full day holidays. Holidays are derived from their rules, so no list has to be
+ * kept up to date. A holiday on a Saturday is observed on the Friday before, one on
+ * a Sunday on the Monday after, except New Year's Day on a Saturday which is not
+ * observed at all.
+ */
+public final class TradingCalendar {
+    public static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+    public static final LocalTime MARKET_OPEN = LocalTime.of(9, 30);
+    public static final LocalTime MARKET_CLOSE = LocalTime.of(16, 0);
+
+    private static final Map<Integer, Set<LocalDate>> HOLIDAYS = new ConcurrentHashMap<>();
+
+    private TradingCalendar() {
+    }
+
+    public static boolean isTradingDay(LocalDate date) {
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
+            return false;
+        }
+        return !HOLIDAYS.computeIfAbsent(date.getYear(), TradingCalendar::holidays).contains(date);
+    }
+
+    /**
+     * The given date if it is a trading day, otherwise the last trading day before it.
+     */
+    public static LocalDate onOrBefore(LocalDate date) {
+        while (!isTradingDay(date)) {
+            date = date.minusDays(1);
+        }
+        return date;
+    }
+
+    /**
+     * The given date if it is a trading day, otherwise the first trading day after it.
+     */
+    public static LocalDate onOrAfter(LocalDate date) {
+        while (!isTradingDay(date)) {
+            date = date.plusDays(1);
+        }
+        return date;
+    }
+
+    /**
+     * The latest trading day whose close is known at the given time.
+     */
+    public static LocalDate lastCompletedTradingDay(ZonedDateTime time) {
+        ZonedDateTime marketTime = time.withZoneSameInstant(MARKET_ZONE);
+        LocalDate day = marketTime.toLocalTime().isBefore(MARKET_CLOSE)
+                ? marketTime.toLocalDate().minusDays(1)
+                : marketTime.toLocalDate();
+        return onOrBefore(day);
+    }
+
+    public static boolean isOpen(ZonedDateTime time) {
+        ZonedDateTime marketTime = time.withZoneSameInstant(MARKET_ZONE);
+        LocalTime localTime = marketTime.toLocalTime();
+        return isTradingDay(marketTime.toLocalDate()) && !localTime.isBefore(MARKET_OPEN)
+                && localTime.isBefore(MARKET_CLOSE);
+    }
+
+    /**
+     * The next market open after the given time.
+     */
+    public static ZonedDateTime nextOpen(ZonedDateTime time) {
+        ZonedDateTime marketTime = time.withZoneSameInstant(MARKET_ZONE);
+        LocalDate day = marketTime.toLocalTime().isBefore(MARKET_OPEN)
+                ? marketTime.toLocalDate()
+                : marketTime.toLocalDate().plusDays(1);
+        return onOrAfter(day).atTime(MARKET_OPEN).atZone(MARKET_ZONE);
+    }
+
+    private static Set<LocalDate> holidays(int year) {
+        Set<LocalDate> holidays = new TreeSet<>();
+        LocalDate newYear = LocalDate.of(year, Month.JANUARY, 1);
+        if (newYear.getDayOfWeek() != DayOfWeek.SATURDAY) {
+            holidays.add(observed(newYear));
+        }
+        holidays.add(nth(year, Month.JANUARY, DayOfWeek.MONDAY, 3)); // Martin Luther King Jr. Day
+        holidays.add(nth(year, Month.FEBRUARY, DayOfWeek.MONDAY, 3)); // Washington's Birthday
+        holidays.add(easter(year).minusDays(2)); // Good Friday
+        holidays.add(LocalDate.of(year, Month.MAY, 1).with(TemporalAdjusters.lastInMonth(DayOfWeek.MONDAY)));
+        if (year >= 2022) {
+            holidays.add(observed(LocalDate.of(year, Month.JUNE, 19))); // Juneteenth
+        }
+        holidays.add(observed(LocalDate.of(year, Month.JULY, 4)));
+        holidays.add(nth(year, Month.SEPTEMBER, DayOfWeek.MONDAY, 1)); // Labor Day
+        holidays.add(nth(year, Month.NOVEMBER, DayOfWeek.THURSDAY, 4)); // Thanksgiving
+        holidays.add(observed(LocalDate.of(year, Month.DECEMBER, 25)));
+        return holidays;
+    }
+
+    private static LocalDate observed(LocalDate holiday) {
+        if (holiday.getDayOfWeek() == DayOfWeek.SATURDAY) {
+            return holiday.minusDays(1);
+        }
+        if (holiday.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            return holiday.plusDays(1);
+        }
+        return holiday;
+    }
+
+    private static LocalDate nth(int year, Month month, DayOfWeek dayOfWeek, int n) {
+        return LocalDate.of(year, month, 1).with(TemporalAdjusters.dayOfWeekInMonth(n, dayOfWeek));
+    }
+
+    // Anonymous Gregorian algorithm
+    private static LocalDate easter(int year) {
+        int a = year % 19;
+        int b = year / 100;
+        int c = year % 100;
+        int d = b / 4;
+        int e = b % 4;
+        int f = (b + 8) / 25;
+        int g = (b - f + 1) / 3;
+        int h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4;
+        int k = c % 4;
+        int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int month = (h + l - 7 * m + 114) / 31;
+        int day = (h + l - 7 * m + 114) % 31 + 1;
+        return LocalDate.of(year, month, day);
+    }
+}
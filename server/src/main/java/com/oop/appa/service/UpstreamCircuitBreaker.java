@@ -0,0 +1,104 @@
+package com.oop.appa.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Circuit breaker around the market data provider. After the configured number of
+ * consecutive failures (errors, timeouts or rate limit notices) the circuit opens
+ * and calls fail fast for the open duration. A single probe call is then let
+ * through: success closes the circuit again, failure reopens it.
+ */
+@Component
+public class UpstreamCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+    private long rejected;
+    private long opened;
+
+    public UpstreamCircuitBreaker(@Value("${marketdata.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${marketdata.circuit-breaker.open-duration:30s}") Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Returns whether a call may go upstream. Every permitted call must be followed
+     * by exactly one of {@link #onSuccess()}, {@link #onFailure()} or
+     * {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        probeInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                opened++;
+            }
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+        }
+    }
+
+    // The call never reached the upstream, e.g. it was throttled locally
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    // Until the next probe may go through, for the Retry-After of rejected calls
+    public synchronized Duration getRetryAfter() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openDurationNanos - (System.nanoTime() - openedAtNanos)));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new HashMap<>();
+        statistics.put("circuitBreakerOpen", state == State.CLOSED ? 0L : 1L);
+        statistics.put("circuitBreakerOpened", opened);
+        statistics.put("circuitBreakerRejected", rejected);
+        statistics.put("circuitBreakerConsecutiveFailures", (long) consecutiveFailures);
+        return statistics;
+    }
+}
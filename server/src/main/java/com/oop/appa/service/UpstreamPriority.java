@@ -0,0 +1,11 @@
+package com.oop.appa.service;
+
+/**
+ * Priority classes for upstream market data calls, highest priority first.
+ */
+public enum UpstreamPriority {
+    INTERACTIVE_QUOTE,
+    CHART_HISTORY,
+    SEARCH,
+    BACKGROUND
+}
@@ -0,0 +1,190 @@
+package com.oop.appa.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.oop.appa.exception.UpstreamThrottledException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Token bucket shared by every Alpha Vantage call. When the bucket is empty,
+ * callers queue by {@link UpstreamPriority} and are granted tokens as they refill.
+ * A caller still queued after the maximum wait fails fast with an
+ * {@link UpstreamThrottledException} instead of hanging on the request thread.
+ */
+@Component
+public class UpstreamRateLimiter {
+    private static final long DISPATCH_INTERVAL_MILLIS = 100;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Duration maxQueueWait;
+    private final Map<UpstreamPriority, Deque<Waiter>> queues = new EnumMap<>(UpstreamPriority.class);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private double tokens;
+    private long lastRefillNanos;
+    private long granted;
+    private long throttled;
+    private long drained;
+
+    public UpstreamRateLimiter(@Value("${marketdata.rate-limit.requests-per-minute:5}") int requestsPerMinute,
+            @Value("${marketdata.rate-limit.burst:5}") int burst,
+            @Value("${marketdata.rate-limit.max-queue-wait:3s}") Duration maxQueueWait) {
+        this.capacity = burst;
+        this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxQueueWait = maxQueueWait;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+        }
+        scheduler.scheduleAtFixedRate(this::dispatch, DISPATCH_INTERVAL_MILLIS, DISPATCH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Completes once a token has been granted to the caller, or exceptionally with
+     * an {@link UpstreamThrottledException} if none is granted within the maximum
+     * queue wait.
+     */
+    public synchronized CompletableFuture<Void> acquire(UpstreamPriority priority) {
+        refill();
+        if (tokens >= 1 && !hasWaitersAtOrAbove(priority)) {
+            tokens -= 1;
+            granted++;
+            return CompletableFuture.completedFuture(null);
+        }
+        Waiter waiter = new Waiter(priority);
+        queues.get(priority).addLast(waiter);
+        scheduler.schedule(() -> expire(waiter), maxQueueWait.toMillis(), TimeUnit.MILLISECONDS);
+        return waiter.future;
+    }
+
+    /**
+     * Empties the bucket after the upstream reports that the rate limit was hit, so
+     * queued calls wait for the budget to refill instead of failing upstream too.
+     */
+    public synchronized void drain() {
+        refill();
+        tokens = 0;
+        drained++;
+    }
+
+    public synchronized Map<String, Long> getStatistics() {
+        refill();
+        Map<String, Long> statistics = new HashMap<>();
+        statistics.put("rateLimitAvailableTokens", (long) tokens);
+        statistics.put("rateLimitGranted", granted);
+        statistics.put("rateLimitThrottled", throttled);
+        statistics.put("rateLimitDrained", drained);
+        long queueDepth = 0;
+        for (Map.Entry<UpstreamPriority, Deque<Waiter>> entry : queues.entrySet()) {
+            statistics.put("rateLimitQueueDepth." + entry.getKey().name(), (long) entry.getValue().size());
+            queueDepth += entry.getValue().size();
+        }
+        statistics.put("rateLimitQueueDepth", queueDepth);
+        return statistics;
+    }
+
+    public synchronized int getAvailableTokens() {
+        refill();
+        return (int) tokens;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Futures are completed outside the lock, their callbacks continue the upstream
+    // call on this thread and must not hold up acquire() on request threads
+    private void dispatch() {
+        List<Waiter> grantedWaiters = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            for (Deque<Waiter> queue : queues.values()) {
+                while (tokens >= 1 && !queue.isEmpty()) {
+                    Waiter waiter = queue.pollFirst();
+                    // A caller that gave up does not spend a token
+                    if (!waiter.future.isDone()) {
+                        grantedWaiters.add(waiter);
+                        tokens -= 1;
+                        granted++;
+                    }
+                }
+                if (tokens < 1) {
+                    break;
+                }
+            }
+        }
+        for (Waiter waiter : grantedWaiters) {
+            waiter.future.complete(null);
+        }
+    }
+
+    private void expire(Waiter waiter) {
+        Duration retryAfter;
+        synchronized (this) {
+            if (!queues.get(waiter.priority).remove(waiter)) {
+                return;
+            }
+            throttled++;
+            refill();
+            retryAfter = timeUntilDispatched();
+        }
+        waiter.future.completeExceptionally(new UpstreamThrottledException(
+                "Market data request queued: upstream request budget exhausted, please retry shortly", retryAfter));
+    }
+
+    // Until every caller still queued, and one more, has been granted a token
+    private Duration timeUntilDispatched() {
+        long queued = 0;
+        for (Deque<Waiter> queue : queues.values()) {
+            queued += queue.size();
+        }
+        double missing = Math.max(0, queued + 1 - tokens);
+        return Duration.ofNanos((long) Math.ceil(missing / tokensPerNano));
+    }
+
+    private boolean hasWaitersAtOrAbove(UpstreamPriority priority) {
+        for (UpstreamPriority queued : UpstreamPriority.values()) {
+            if (queued.compareTo(priority) > 0) {
+                return false;
+            }
+            if (!queues.get(queued).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    private static class Waiter {
+        private final UpstreamPriority priority;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(UpstreamPriority priority) {
+            this.priority = priority;
+        }
+    }
+}
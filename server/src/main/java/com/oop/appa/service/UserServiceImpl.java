@@ -2,15 +2,15 @@ package com.oop.appa.service;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.time.Instant;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
@@ -28,14 +28,17 @@ public class UserServiceImpl implements UserService {
     private UserRepository userRepository;
     private JavaMailSender mailSender;
     private TemplateEngine templateEngine;
+    private TaskScheduler taskScheduler;
 
-    private static ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private static final Duration OTP_VALIDITY = Duration.ofMinutes(5);
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, JavaMailSender mailSender, TemplateEngine templateEngine) {
+    public UserServiceImpl(UserRepository userRepository, JavaMailSender mailSender, TemplateEngine templateEngine,
+            TaskScheduler taskScheduler) {
         this.userRepository = userRepository;
         this.mailSender = mailSender;
         this.templateEngine = templateEngine;
+        this.taskScheduler = taskScheduler;
     }
 
     // GET
@@ -82,9 +85,9 @@ public class UserServiceImpl implements UserService {
             user.setOtp(otp);
             userRepository.save(user);
 
-            executor.schedule(() -> {
+            taskScheduler.schedule(() -> {
                 deleteOtp(email);
-            }, 5, TimeUnit.MINUTES);
+            }, Instant.now().plus(OTP_VALIDITY));
 
         } catch (Exception e) {
             throw new RuntimeException("Error updating OTP service: " + e.getMessage(), e);
@@ -0,0 +1,301 @@
+package com.oop.appa.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Periodic snapshot of the hot in-memory state, so a restarted node starts warm
+ * instead of sending its first requests to the upstream. The snapshot holds the
+ * cached quotes, the symbols whose price histories are open and the cached
+ * volatilities of portfolios and stocks. It is written to a single file every
+ * interval and once more on shutdown, replacing the previous file atomically.
+ *
+ * On startup the snapshot is loaded on a background thread while the rest of the
+ * context starts. Spring Boot only reports the application ready, and readiness
+ * probes only accept traffic, after every ApplicationRunner has returned, so this
+ * runner holds readiness back until the load finished or max-wait passed.
+ * Quotes keep the time they stay fresh until and refresh as usual once stale.
+ * Volatilities are only restored from a snapshot younger than max-age, since
+ * holdings may have changed on another node in the meantime.
+ */
+@Component
+@ConditionalOnProperty(name = "marketdata.snapshot.enabled", havingValue = "true", matchIfMissing = true)
+public class WarmStartSnapshot implements SmartInitializingSingleton, ApplicationRunner {
+    private static final int MAGIC = 0x57534E31;
+    private static final int CHECKSUM_BYTES = 4;
+    private static final String[] VALUATION_CACHES = {
+            "portfolioVolatility",
+            "AnnualizedportfolioVolatility",
+            "annualizedVolatility" };
+    private static final byte INTEGER_KEY = 'I';
+    private static final byte STRING_KEY = 'S';
+
+    private final QuoteCache quoteCache;
+    private final PriceHistoryStore priceHistoryStore;
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler taskScheduler;
+    private final Path file;
+    private final Duration interval;
+    private final Duration maxAge;
+    private final Duration maxWait;
+    private final CompletableFuture<Void> warmUp = new CompletableFuture<>();
+
+    public WarmStartSnapshot(QuoteCache quoteCache, PriceHistoryStore priceHistoryStore, CacheManager cacheManager,
+            ObjectMapper objectMapper, TaskScheduler taskScheduler,
+            @Value("${marketdata.snapshot.file:data/warm-start.snapshot}") String file,
+            @Value("${marketdata.snapshot.interval:1m}") Duration interval,
+            @Value("${marketdata.snapshot.max-age:5m}") Duration maxAge,
+            @Value("${marketdata.snapshot.max-wait:30s}") Duration maxWait) {
+        this.quoteCache = quoteCache;
+        this.priceHistoryStore = priceHistoryStore;
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        this.taskScheduler = taskScheduler;
+        this.file = Paths.get(file);
+        this.interval = interval;
+        this.maxAge = maxAge;
+        this.maxWait = maxWait;
+    }
+
+    // Starts the load as soon as the caches exist, alongside the web server startup
+    @Override
+    public void afterSingletonsInstantiated() {
+        Thread loader = new Thread(() -> {
+            try {
+                load();
+            } catch (IOException | RuntimeException e) {
+                // A missing or unreadable snapshot only means a cold start
+            } finally {
+                warmUp.complete(null);
+            }
+        }, "warm-start-snapshot");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            warmUp.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Rather serve cold than keep the node out of rotation
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::writeQuietly, interval);
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        // Only once the load finished, or the snapshot would be written half empty
+        if (warmUp.isDone()) {
+            writeQuietly();
+        }
+    }
+
+    synchronized void write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeLong(Instant.now().toEpochMilli());
+        writeQuotes(out);
+        Set<String> symbols = priceHistoryStore.getLoadedSymbols();
+        out.writeInt(symbols.size());
+        for (String symbol : symbols) {
+            out.writeUTF(symbol);
+        }
+        writeValuations(out);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.toByteArray());
+        out.writeInt((int) checksum.getValue());
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            // The previous snapshot stays in place, the next run tries again
+        }
+    }
+
+    private void writeQuotes(DataOutputStream out) throws IOException {
+        List<CachedQuote> quotes = new ArrayList<>();
+        quoteCache.forEach((symbol, value, freshUntil) -> quotes.add(new CachedQuote(symbol, value, freshUntil)));
+        out.writeInt(quotes.size());
+        for (CachedQuote quote : quotes) {
+            byte[] body = objectMapper.writeValueAsBytes(quote.value);
+            out.writeUTF(quote.symbol);
+            out.writeLong(quote.freshUntil.toEpochMilli());
+            out.writeInt(body.length);
+            out.write(body);
+        }
+    }
+
+    // Volatilities are maps of label to value, keyed by portfolio ID or symbol
+    private void writeValuations(DataOutputStream out) throws IOException {
+        out.writeInt(VALUATION_CACHES.length);
+        for (String name : VALUATION_CACHES) {
+            Map<Object, Map<String, Double>> entries = new HashMap<>();
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache) {
+                ((com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache()).asMap().forEach((key, value) -> {
+                    Map<String, Double> valuation = asValuation(value);
+                    if ((key instanceof Integer || key instanceof String) && valuation != null) {
+                        entries.put(key, valuation);
+                    }
+                });
+            }
+            out.writeUTF(name);
+            out.writeInt(entries.size());
+            for (Map.Entry<Object, Map<String, Double>> entry : entries.entrySet()) {
+                if (entry.getKey() instanceof Integer) {
+                    out.writeByte(INTEGER_KEY);
+                    out.writeInt((Integer) entry.getKey());
+                } else {
+                    out.writeByte(STRING_KEY);
+                    out.writeUTF((String) entry.getKey());
+                }
+                out.writeInt(entry.getValue().size());
+                for (Map.Entry<String, Double> value : entry.getValue().entrySet()) {
+                    out.writeUTF(value.getKey());
+                    out.writeDouble(value.getValue());
+                }
+            }
+        }
+    }
+
+    private static Map<String, Double> asValuation(Object value) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        Map<String, Double> valuation = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof Double)) {
+                return null;
+            }
+            valuation.put((String) entry.getKey(), (Double) entry.getValue());
+        }
+        return valuation;
+    }
+
+    void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < CHECKSUM_BYTES) {
+            return;
+        }
+        int length = bytes.length - CHECKSUM_BYTES;
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, length);
+        if ((int) checksum.getValue() != ByteBuffer.wrap(bytes, length, CHECKSUM_BYTES).getInt()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+        if (in.readInt() != MAGIC) {
+            return;
+        }
+        Instant takenAt = Instant.ofEpochMilli(in.readLong());
+
+        int quotes = in.readInt();
+        for (int i = 0; i < quotes; i++) {
+            String symbol = in.readUTF();
+            Instant freshUntil = Instant.ofEpochMilli(in.readLong());
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            quoteCache.restore(symbol, objectMapper.readTree(body), freshUntil);
+        }
+
+        int symbols = in.readInt();
+        for (int i = 0; i < symbols; i++) {
+            String symbol = in.readUTF();
+            try {
+                priceHistoryStore.preload(symbol);
+            } catch (RuntimeException e) {
+                // The history is opened, or downloaded again, on its first request
+            }
+        }
+
+        boolean recent = Instant.now().isBefore(takenAt.plus(maxAge));
+        int caches = in.readInt();
+        for (int i = 0; i < caches; i++) {
+            Cache cache = cacheManager.getCache(in.readUTF());
+            int entries = in.readInt();
+            for (int j = 0; j < entries; j++) {
+                Object key = in.readByte() == INTEGER_KEY ? (Object) in.readInt() : in.readUTF();
+                int size = in.readInt();
+                Map<String, Double> valuation = new HashMap<>();
+                for (int k = 0; k < size; k++) {
+                    valuation.put(in.readUTF(), in.readDouble());
+                }
+                if (recent && cache != null) {
+                    cache.putIfAbsent(key, valuation);
+                }
+            }
+        }
+    }
+
+    private static class CachedQuote {
+        private final String symbol;
+        private final JsonNode value;
+        private final Instant freshUntil;
+
+        CachedQuote(String symbol, JsonNode value, Instant freshUntil) {
+            this.symbol = symbol;
+            this.value = value;
+            this.freshUntil = freshUntil;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.oop.appa.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.oop.appa.config.WebClientConfig;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Compares the pooled upstream client against one that opens a new connection per
+ * call. A local server returns a gzip compressed quote-sized body and counts the
+ * distinct client ports it sees, which is the number of connections opened.
+ *
+ * <pre>
+ * java -Dconcurrency=32 -Drequests=5000 com.oop.appa.benchmark.ConnectionReuseBenchmark
+ * </pre>
+ */
+public class ConnectionReuseBenchmark {
+    private static final int CONCURRENCY = Integer.getInteger("concurrency", 32);
+    private static final int REQUESTS = Integer.getInteger("requests", 5000);
+    private static final byte[] BODY = ("{\"Global Quote\": {\"01. symbol\": \"AAPL\", \"05. price\": \"189.2500\", "
+            + "\"06. volume\": \"51234567\", \"07. latest trading day\": \"2024-01-05\"}}").getBytes();
+
+    private static final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    public static void main(String[] args) throws Exception {
+        // Without a logging config every request is logged at debug level
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        byte[] compressedBody = gzip(BODY);
+        DisposableServer server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes.get("/query", (request, response) -> {
+                    clientPorts.add(request.remoteAddress().getPort());
+                    boolean gzip = String.valueOf(request.requestHeaders().get("Accept-Encoding")).contains("gzip");
+                    response.header("Content-Type", "application/json");
+                    if (gzip) {
+                        response.header("Content-Encoding", "gzip");
+                    }
+                    return response.sendByteArray(Mono.just(gzip ? compressedBody : BODY));
+                }))
+                .bindNow();
+        String url = "http://127.0.0.1:" + server.port() + "/query?function=GLOBAL_QUOTE";
+
+        System.out.printf("%-12s %10s %10s %10s %12s %8s%n", "client", "req/s", "p50 ms", "p99 ms", "connections",
+                "errors");
+        ConnectionProvider pool = ConnectionProvider.builder("benchmark")
+                .maxConnections(CONCURRENCY)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+        report("pooled", url, pool);
+        report("unpooled", url, ConnectionProvider.newConnection());
+        pool.dispose();
+        server.disposeNow();
+        System.exit(0);
+    }
+
+    private static void report(String name, String url, ConnectionProvider connectionProvider) {
+        WebClient webClient = WebClientConfig.createWebClient(connectionProvider, Duration.ofSeconds(5),
+                Duration.ofSeconds(30), DataSize.ofMegabytes(1));
+        run(webClient, url, Math.max(REQUESTS / 10, CONCURRENCY));
+        clientPorts.clear();
+        Result result = run(webClient, url, REQUESTS);
+        System.out.printf("%-12s %10.1f %10.1f %10.1f %12d %8d%n", name, result.throughput(),
+                result.percentile(0.50), result.percentile(0.99), clientPorts.size(), result.errors);
+    }
+
+    private static Result run(WebClient webClient, String url, int requests) {
+        long[] latencies = new long[requests];
+        int[] errors = new int[1];
+        long start = System.nanoTime();
+        Flux.range(0, requests)
+                .flatMap(index -> {
+                    long sent = System.nanoTime();
+                    return webClient.get()
+                            .uri(url)
+                            .retrieve()
+                            .bodyToMono(byte[].class)
+                            .then(Mono.<Void>empty())
+                            .onErrorResume(e -> {
+                                synchronized (errors) {
+                                    errors[0]++;
+                                }
+                                return Mono.empty();
+                            })
+                            .doFinally(signal -> latencies[index] = System.nanoTime() - sent);
+                }, CONCURRENCY)
+                .blockLast();
+        return new Result(latencies, System.nanoTime() - start, errors[0]);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class Result {
+        private final long[] latencies;
+        private final long elapsedNanos;
+        private final int errors;
+
+        Result(long[] latencies, long elapsedNanos, int errors) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+
+        double throughput() {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        double percentile(double quantile) {
+            int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.oop.appa.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop load benchmark for comparing the platform thread and virtual thread
+ * modes. Start one server normally and one with the virtual-threads profile on
+ * another port, then pass the same endpoint on both servers:
+ *
+ * <pre>
+ * APPA_TOKEN=&lt;jwt&gt; java -Dconcurrency=200 -Drequests=5000 com.oop.appa.benchmark.LoadBenchmark \
+ *     http://localhost:8080/stocks/calculateOneDayReturn?symbol=AAPL \
+ *     http://localhost:8081/stocks/calculateOneDayReturn?symbol=AAPL
+ * </pre>
+ *
+ * Each URL gets a warm-up run followed by the measured run, and throughput and
+ * latency percentiles are printed per URL.
+ */
+public class LoadBenchmark {
+    private static final int CONCURRENCY = Integer.getInteger("concurrency", 200);
+    private static final int REQUESTS = Integer.getInteger("requests", 5000);
+    private static final String TOKEN = System.getenv("APPA_TOKEN");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: LoadBenchmark <url> [<url> ...]");
+            System.exit(1);
+        }
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(CONCURRENCY))
+                .build();
+        System.out.printf("%-70s %10s %10s %10s %10s %8s%n", "url", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (String url : args) {
+            run(httpClient, url, Math.max(REQUESTS / 10, CONCURRENCY));
+            Result result = run(httpClient, url, REQUESTS);
+            System.out.printf("%-70s %10.1f %10.1f %10.1f %10.1f %8d%n", url, result.throughput(),
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), result.errors);
+        }
+        System.exit(0);
+    }
+
+    private static Result run(HttpClient httpClient, String url, int requests) throws InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .GET();
+        if (TOKEN != null) {
+            builder.header("Authorization", "Bearer " + TOKEN);
+        }
+        HttpRequest request = builder.build();
+
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        for (int worker = 0; worker < CONCURRENCY; worker++) {
+            workers.execute(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests) {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[index] = System.nanoTime() - sent;
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        return new Result(latencies, System.nanoTime() - start, errors.get());
+    }
+
+    private static class Result {
+        private final long[] latencies;
+        private final long elapsedNanos;
+        private final int errors;
+
+        Result(long[] latencies, long elapsedNanos, int errors) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+
+        double throughput() {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        double percentile(double quantile) {
+            int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.oop.appa.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.oop.appa.service.PriceSeries;
+
+/**
+ * Monthly volatility computed from the period data as data point maps with the
+ * close as a string, against the primitive {@link PriceSeries}. The bars stand in
+ * for the memory-mapped daily history: 13 month ends for a year and 63 trading days
+ * for a quarter. Run with the GC profiler for allocation per operation:
+ *
+ * <pre>
+ * java com.oop.appa.benchmark.PriceSeriesBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceSeriesBenchmark {
+    @Param({ "13", "63" })
+    private int bars;
+
+    private int[] epochDays;
+    private double[] closes;
+
+    @Setup
+    public void setUp() {
+        epochDays = new int[bars];
+        closes = new double[bars];
+        int day = (int) LocalDate.of(2023, 1, 3).toEpochDay();
+        double close = 150;
+        for (int i = 0; i < bars; i++) {
+            epochDays[i] = day + i;
+            close *= 1 + Math.sin(i) * 0.02;
+            closes[i] = close;
+        }
+    }
+
+    @Benchmark
+    public double dataPointMaps() {
+        List<Map<String, Object>> monthlyData = new ArrayList<>(bars);
+        for (int i = bars - 1; i >= 0; i--) {
+            Map<String, Object> dataPoint = new HashMap<>();
+            dataPoint.put("date", LocalDate.ofEpochDay(epochDays[i]).toString());
+            dataPoint.put("4. close", String.format(Locale.ROOT, "%.4f", closes[i]));
+            monthlyData.add(dataPoint);
+        }
+
+        List<Double> monthlyClosingPrices = monthlyData.stream()
+                .map(dataPoint -> Double.parseDouble(dataPoint.get("4. close").toString()))
+                .collect(Collectors.toList());
+        List<Double> monthlyReturns = new ArrayList<>();
+        for (int i = 1; i < monthlyClosingPrices.size(); i++) {
+            monthlyReturns.add((monthlyClosingPrices.get(i) - monthlyClosingPrices.get(i - 1))
+                    / monthlyClosingPrices.get(i - 1));
+        }
+        double mean = monthlyReturns.stream().mapToDouble(val -> val).average().orElse(0.0);
+        double variance = monthlyReturns.stream().mapToDouble(val -> Math.pow(val - mean, 2)).sum()
+                / monthlyReturns.size();
+        return Math.sqrt(variance);
+    }
+
+    @Benchmark
+    public double priceSeries() {
+        int[] seriesDays = new int[bars];
+        double[] seriesCloses = new double[bars];
+        for (int i = 0; i < bars; i++) {
+            seriesDays[i] = epochDays[i];
+            seriesCloses[i] = closes[i];
+        }
+        double[] monthlyReturns = new PriceSeries(seriesDays, seriesCloses).returns();
+
+        double sum = 0.0;
+        for (double monthlyReturn : monthlyReturns) {
+            sum += monthlyReturn;
+        }
+        double mean = sum / monthlyReturns.length;
+        double variance = 0.0;
+        for (double monthlyReturn : monthlyReturns) {
+            variance += (monthlyReturn - mean) * (monthlyReturn - mean);
+        }
+        return Math.sqrt(variance / monthlyReturns.length);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PriceSeriesBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}